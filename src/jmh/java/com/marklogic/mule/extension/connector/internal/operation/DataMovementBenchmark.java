@@ -0,0 +1,109 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.mule.extension.connector.standin.MarkLogicStandInServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures writing and querying documents with DMSDK end-to-end against a {@link MarkLogicStandInServer}, with and
+ * without simulated server latency. Scores are per document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataMovementBenchmark {
+
+    private static final int DOCUMENTS = 1000;
+
+    @Param({"0", "5"})
+    public long latencyMillis;
+
+    private MarkLogicStandInServer server;
+    private DatabaseClient client;
+    private DataMovementManager dmm;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new MarkLogicStandInServer().withLatencyMillis(latencyMillis).start();
+        client = DatabaseClientFactory.newClient("localhost", server.getPort(),
+            new DatabaseClientFactory.DigestAuthContext("standin", "standin"), DatabaseClient.ConnectionType.GATEWAY);
+        dmm = client.newDataMovementManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.release();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void writeBatcher() {
+        WriteBatcher batcher = dmm.newWriteBatcher().withBatchSize(100).withThreadCount(4);
+        dmm.startJob(batcher);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            long id = sequence.incrementAndGet();
+            batcher.add("/benchmark/" + id + ".json", new StringHandle("{\"id\":" + id + "}").withFormat(Format.JSON));
+        }
+        batcher.flushAndWait();
+        dmm.stopJob(batcher);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public long queryBatcher() {
+        if (server.getDocumentCount() < DOCUMENTS) {
+            writeBatcher();
+        }
+        AtomicLong uris = new AtomicLong();
+        QueryBatcher batcher = dmm.newQueryBatcher(client.newQueryManager().newRawStructuredQueryDefinition(
+                new StringHandle("{\"query\":{\"queries\":[]}}").withFormat(Format.JSON)))
+            .withBatchSize(100)
+            .withThreadCount(4)
+            .onUrisReady(batch -> uris.addAndGet(batch.getItems().length));
+        dmm.startJob(batcher);
+        batcher.awaitCompletion();
+        dmm.stopJob(batcher);
+        return uris.get();
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.mule.extension.connector.api.connection.MarkLogicConnectionType;
+import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
+import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.internal.connection.provider.MarkLogicConnectionProvider;
+import com.marklogic.mule.extension.connector.standin.MarkLogicStandInServer;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up the insertion batcher of an importDocs invocation.
+ * Leasing a batcher starts a DMSDK job the first time, which runs against a {@link MarkLogicStandInServer}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertionBatcherBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Signature {
+
+        InsertionBatcherContext context;
+
+        @Setup
+        public void setUp() {
+            context = newContext(new MarkLogicConnection(new MarkLogicConnectionProvider().withConnectionId("benchmark")));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Lease {
+
+        MarkLogicStandInServer server;
+        MarkLogicConnection connection;
+        MarkLogicConfiguration configuration;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, ConnectionException {
+            server = new MarkLogicStandInServer().start();
+            connection = new MarkLogicConnection(server.newConnectionProvider(MarkLogicConnectionType.DIRECT));
+            connection.connect();
+            configuration = newContext(connection).getConfiguration();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            connection.invalidate();
+            server.close();
+        }
+    }
+
+    @Benchmark
+    public int computeSignature(Signature state) {
+        return state.context.computeSignature();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public MarkLogicInsertionBatcher getInsertionBatcher(Lease state) {
+        MarkLogicInsertionBatcher batcher = state.connection.getInsertionBatcher(state.configuration, null, null, null);
+        batcher.releaseLease();
+        return batcher;
+    }
+
+    private static InsertionBatcherContext newContext(MarkLogicConnection connection) {
+        MarkLogicConfiguration configuration = new MarkLogicConfiguration();
+        configuration.setConfigId("benchmark-config");
+        configuration.setThreadCount(4);
+        configuration.setBatchSize(100);
+        configuration.setSecondsBeforeFlush(2);
+        configuration.setJobName("benchmark-job");
+        configuration.setServerTransform("null");
+        configuration.setServerTransformParams("null");
+
+        InsertionBatcherContext context = new InsertionBatcherContext();
+        context.setConfiguration(configuration);
+        context.setConnection(connection);
+        context.setJobName(configuration.getJobName());
+        return context;
+    }
+}
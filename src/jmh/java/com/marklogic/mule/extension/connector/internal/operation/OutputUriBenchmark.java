@@ -0,0 +1,56 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicUriStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generating the URI of an imported document with each URI strategy, and with a payload-derived basename.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputUriBenchmark {
+
+    private static final byte[] CONTENT = "{\"employeeId\":\"123\",\"name\":\"Ada Lovelace\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"RANDOM_UUID", "TIME_ORDERED_UUID", "COUNTER", "CONTENT_HASH"})
+    public MarkLogicUriStrategy uriStrategy;
+
+    @Benchmark
+    public String generatedBasename() {
+        return MarkLogicOperations.generateOutputUri("/mulesoft/", ".json", true, null, uriStrategy, () -> CONTENT);
+    }
+
+    @Benchmark
+    public String providedBasename() {
+        return MarkLogicOperations.generateOutputUri("/mulesoft/", ".json", false, "employee123", uriStrategy, () -> CONTENT);
+    }
+}
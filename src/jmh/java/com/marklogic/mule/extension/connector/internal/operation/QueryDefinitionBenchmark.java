@@ -0,0 +1,94 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.query.QueryManager;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueryFormat;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueryStrategy;
+import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the query definition of queryDocs, exportDocs, and deleteDocs for each query strategy, with and
+ * without the compiled query cache. Building a query definition does not contact MarkLogic, so no server is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryDefinitionBenchmark {
+
+    private static final String STRUCTURED_QUERY =
+        "{ \"query\": { \"queries\": [{ \"collection-query\": {\"uri\": [ \"mulesoft-test\" ] } }] } }";
+    private static final String BUILDER_QUERY =
+        "sb.and(sb.collection(\"mulesoft-test\"), sb.value(sb.jsonProperty(\"employeeId\"), \"123\"))";
+    private static final String CTS_QUERY =
+        "{ \"ctsquery\": { \"collectionQuery\": { \"uris\": [ \"mulesoft-test\" ] } } }";
+
+    @Param({"RawStructuredQueryDefinition", "StructuredQueryBuilder", "CTSQuery"})
+    public MarkLogicQueryStrategy queryStrategy;
+
+    @Param({"0", "64"})
+    public int queryCacheSize;
+
+    private DatabaseClient client;
+    private QueryManager queryManager;
+    private MarkLogicOperations operations;
+    private MarkLogicConfiguration configuration;
+    private String queryString;
+
+    @Setup
+    public void setUp() {
+        client = DatabaseClientFactory.newClient("localhost", 8000, new DatabaseClientFactory.DigestAuthContext("benchmark", "benchmark"));
+        queryManager = client.newQueryManager();
+        operations = new MarkLogicOperations();
+        configuration = new MarkLogicConfiguration();
+        configuration.setQueryCacheSize(queryCacheSize);
+        if (MarkLogicQueryStrategy.StructuredQueryBuilder.equals(queryStrategy)) {
+            queryString = BUILDER_QUERY;
+        } else if (MarkLogicQueryStrategy.CTSQuery.equals(queryStrategy)) {
+            queryString = CTS_QUERY;
+        } else {
+            queryString = STRUCTURED_QUERY;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.release();
+    }
+
+    @Benchmark
+    public QueryDefinition getQueryDefinition() {
+        return operations.getQueryDefinition(configuration, queryManager, queryString, MarkLogicQueryFormat.JSON, null, queryStrategy);
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.result.resultset;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.document.DocumentDescriptor;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.JacksonHandle;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.io.marker.AbstractReadHandle;
+import com.marklogic.client.io.marker.BufferableHandle;
+import com.marklogic.client.io.marker.DocumentMetadataReadHandle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a document read from MarkLogic into the value handed to a flow, for each kind of document, against
+ * the extractor of earlier releases, which read JSON into a tree before converting it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordExtractorBenchmark {
+
+    private static final String JSON = "{\"employeeId\":\"123\",\"name\":{\"first\":\"Ada\",\"last\":\"Lovelace\"}," +
+        "\"skills\":[\"analysis\",\"programming\",\"mathematics\"],\"salary\":90000,\"active\":true}";
+    private static final String XML = "<employee id=\"123\"><name><first>Ada</first><last>Lovelace</last></name>" +
+        "<skills><skill>analysis</skill><skill>programming</skill></skills><salary>90000</salary></employee>";
+
+    @Param({"application/json", "application/xml", "text/plain", "application/octet-stream"})
+    public String mimetype;
+
+    private RecordExtractor recordExtractor;
+    private LegacyRecordExtractor legacyRecordExtractor;
+    private DocumentRecord record;
+
+    @Setup
+    public void setUp() {
+        recordExtractor = new RecordExtractor();
+        legacyRecordExtractor = new LegacyRecordExtractor();
+        String content = mimetype.endsWith("json") ? JSON : XML;
+        record = new BenchmarkRecord(content.getBytes(StandardCharsets.UTF_8), mimetype);
+    }
+
+    @Benchmark
+    public Object extractRecord() {
+        return recordExtractor.extractRecord(record);
+    }
+
+    @Benchmark
+    public Object extractRecordLegacy() {
+        return legacyRecordExtractor.extractRecord(record);
+    }
+
+    /**
+     * The extractor of earlier releases: JSON read into a tree and then converted, XML and text decoded by a
+     * StringHandle, and the MIME type split on every document.
+     */
+    static class LegacyRecordExtractor {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        Object extractRecord(DocumentRecord doc) {
+            String mimeType = kindOf(doc.getMimetype());
+            if ("xml".equals(mimeType)) {
+                return doc.getContent(new StringHandle()).withMimetype("application/xml").withFormat(Format.XML).get();
+            } else if ("json".equals(mimeType)) {
+                JsonNode jsonNode = doc.getContent(new JacksonHandle()).get();
+                switch (jsonNode.getNodeType()) {
+                    case ARRAY:
+                        return objectMapper.convertValue(jsonNode, List.class);
+                    case STRING:
+                        return objectMapper.convertValue(jsonNode, String.class);
+                    case NUMBER:
+                        return objectMapper.convertValue(jsonNode, Number.class);
+                    default:
+                        return objectMapper.convertValue(jsonNode, Map.class);
+                }
+            } else if ("text".equals(mimeType)) {
+                return doc.getContent(new StringHandle()).get();
+            }
+            return doc.getContent(new BytesHandle()).get();
+        }
+
+        private static String kindOf(String mimeString) {
+            if (mimeString != null) {
+                List<String> typeString = Arrays.asList(mimeString.split("/"));
+                for (String kind : new String[]{"xml", "json", "text"}) {
+                    if (typeString.contains(kind)) {
+                        return kind;
+                    }
+                }
+            }
+            return "binary";
+        }
+    }
+
+    /**
+     * A record whose content is parsed into whichever handle it is read with, as a record read from a
+     * DocumentPage is.
+     */
+    static class BenchmarkRecord implements DocumentRecord {
+
+        private final byte[] content;
+        private final String mimetype;
+
+        BenchmarkRecord(byte[] content, String mimetype) {
+            this.content = content;
+            this.mimetype = mimetype;
+        }
+
+        @Override
+        public String getUri() {
+            return "/benchmark/record";
+        }
+
+        @Override
+        public DocumentDescriptor getDescriptor() {
+            return null;
+        }
+
+        @Override
+        public Format getFormat() {
+            return null;
+        }
+
+        @Override
+        public String getMimetype() {
+            return mimetype;
+        }
+
+        @Override
+        public long getLength() {
+            return content.length;
+        }
+
+        @Override
+        public <T extends DocumentMetadataReadHandle> T getMetadata(T metadataHandle) {
+            return metadataHandle;
+        }
+
+        @Override
+        public <T> T getMetadataAs(Class<T> as) {
+            return null;
+        }
+
+        @Override
+        public <T extends AbstractReadHandle> T getContent(T contentHandle) {
+            ((BufferableHandle) contentHandle).fromBuffer(content);
+            return contentHandle;
+        }
+
+        @Override
+        public <T> T getContentAs(Class<T> as) {
+            return null;
+        }
+    }
+}
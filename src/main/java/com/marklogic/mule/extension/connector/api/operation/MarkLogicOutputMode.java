@@ -0,0 +1,32 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.api.operation;
+
+/**
+ * Determines how queryDocs and exportDocs return the content of each document.
+ */
+public enum MarkLogicOutputMode
+{
+    /**
+     * JSON documents are returned as maps, lists, or values, XML and text documents as strings, and other documents
+     * as byte arrays; the behavior of earlier releases.
+     */
+    PARSED,
+    /**
+     * Every document is returned as a stream of its unparsed content, with the MIME type MarkLogic reports for it, so
+     * that DataWeave only parses what the flow reads. The content of each document is still read into memory with
+     * its page; the streams read from that copy.
+     */
+    RAW;
+}
@@ -0,0 +1,33 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.api.operation;
+
+/**
+ * Determines how queryDocs moves from one page of results to the next.
+ */
+public enum MarkLogicPaginationMode
+{
+    /** Each page is a search starting at the offset of the page, in relevance order; the behavior of earlier releases. */
+    OFFSET,
+    /**
+     * Pages continue from the last URI returned by each forest, so that every page costs the same however deep it is.
+     * Results are returned in URI order within each forest rather than in relevance order.
+     */
+    URI_CURSOR,
+    /**
+     * Like URI_CURSOR, but forests are read concurrently and the documents of several pages are read at once, so that
+     * reads scale with the number of forests. Pages are returned as they are read unless ordering is requested.
+     */
+    PARALLEL;
+}
@@ -0,0 +1,29 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.api.operation;
+
+/**
+ * Determines how importDocs generates the basename of a document URI when none is provided.
+ */
+public enum MarkLogicUriStrategy
+{
+    /** A random (version 4) UUID; the behavior of earlier releases. */
+    RANDOM_UUID,
+    /** A UUID that starts with the current time in milliseconds, so URIs sort roughly by insertion time. */
+    TIME_ORDERED_UUID,
+    /** An identifier of the Mule node followed by a counter that only ever increases on that node. */
+    COUNTER,
+    /** The SHA-256 hash of the document content, so the same content is always written to the same URI. */
+    CONTENT_HASH;
+}
@@ -14,10 +14,15 @@
 package com.marklogic.mule.extension.connector.internal.config;
 
 import com.marklogic.client.document.ServerTransform;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueueOverflowPolicy;
 import com.marklogic.mule.extension.connector.internal.connection.provider.MarkLogicConnectionProvider;
 import com.marklogic.mule.extension.connector.internal.operation.MarkLogicOperations;
+import com.marklogic.mule.extension.connector.internal.operation.QueryDefinitionCache;
+import com.marklogic.mule.extension.connector.internal.operation.WriteOutcomeBroadcaster;
+import com.marklogic.mule.extension.connector.internal.source.MarkLogicWriteOutcomeSource;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.mule.runtime.extension.api.annotation.Operations;
+import org.mule.runtime.extension.api.annotation.Sources;
 import org.mule.runtime.extension.api.annotation.connectivity.ConnectionProviders;
 import org.mule.runtime.extension.api.annotation.param.Optional;
 import org.mule.runtime.extension.api.annotation.param.Parameter;
@@ -38,6 +43,7 @@ import java.util.Objects;
  * core from the extension.
  */
 @Operations(MarkLogicOperations.class)
+@Sources(MarkLogicWriteOutcomeSource.class)
 @ConnectionProviders(MarkLogicConnectionProvider.class)
 public class MarkLogicConfiguration
 {
@@ -87,6 +93,164 @@ public class MarkLogicConfiguration
     @Placement(tab = Placement.DEFAULT_TAB)
     private String jobName;
 
+    @Parameter
+    @Summary("The maximum number of documents an insertion batcher may hold before they are written; 0 means unbounded.")
+    @Optional(defaultValue = "0")
+    @Example("10000")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private int maxQueuedDocuments;
+
+    @Parameter
+    @Summary("The maximum number of content bytes an insertion batcher may hold before they are written; 0 means unbounded.")
+    @Optional(defaultValue = "0")
+    @Example("268435456")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private long maxQueuedBytes;
+
+    @Parameter
+    @Summary("What importDocs does when the queue limits are reached: BLOCK the caller, FAIL with MARKLOGIC:QUEUE_FULL, or SPILL to the spool directory.")
+    @Optional(defaultValue = "BLOCK")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private MarkLogicQueueOverflowPolicy queueOverflowPolicy;
+
+    @Parameter
+    @Summary("A local directory used to hold documents that cannot be queued or written to MarkLogic.")
+    @Optional(defaultValue = "null")
+    @Example("/var/spool/mule-marklogic")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private String spoolDirectory;
+
+    @Parameter
+    @Summary("The number of times a batch that failed to be written is retried; when exhausted, its documents are written to the dead-letter area of the spool directory. 0 disables retries.")
+    @Optional(defaultValue = "0")
+    @Example("5")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private int maxBatchRetries;
+
+    @Parameter
+    @Summary("The delay before the first retry of a failed batch; it doubles with every further attempt.")
+    @Optional(defaultValue = "1000")
+    @Example("1000")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private long retryInitialDelayMillis;
+
+    @Parameter
+    @Summary("The upper bound on the delay between retries of a failed batch.")
+    @Optional(defaultValue = "60000")
+    @Example("60000")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private long retryMaxDelayMillis;
+
+    @Parameter
+    @Summary("Records queued documents in a memory-mapped journal below the spool directory, so that documents not yet written when the Mule runtime stops are queued again when it restarts.")
+    @Optional(defaultValue = "false")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private boolean journalEnabled;
+
+    @Parameter
+    @Summary("Adjusts the batch size and the number of batches written concurrently toward the target batch latency; batchSize and threadCount become upper bounds.")
+    @Optional(defaultValue = "false")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private boolean adaptiveBatching;
+
+    @Parameter
+    @Summary("The latency, from closing a batch until it is written, that adaptive batching aims for.")
+    @Optional(defaultValue = "1000")
+    @Example("1000")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private long targetBatchLatencyMillis;
+
+    @Parameter
+    @Summary("The maximum number of insertion batchers kept per connection; the least recently used idle batcher is flushed and stopped to make room. 0 means unbounded.")
+    @Optional(defaultValue = "0")
+    @Example("100")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private int maxInsertionBatchers;
+
+    @Parameter
+    @Summary("Insertion batchers not used for this many seconds are flushed and stopped. 0 keeps them until the connection is closed.")
+    @Optional(defaultValue = "0")
+    @Example("600")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private int batcherIdleTimeoutSeconds;
+
+    @Parameter
+    @Summary("The longest a document waits in a batch that is not yet full before the batch is flushed. 0 falls back to secondsBeforeFlush.")
+    @Optional(defaultValue = "0")
+    @Example("250")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private long maxFlushLatencyMillis;
+
+    @Parameter
+    @Summary("The maximum number of content bytes in a batch; a batch is flushed before a document would take it past this size. 0 limits batches by document count only.")
+    @Optional(defaultValue = "0")
+    @Example("10485760")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private long maxBatchBytes;
+
+    @Parameter
+    @Summary("Skip documents whose content has not changed since they were last written to the same URI; requires a spool directory.")
+    @Optional(defaultValue = "false")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private boolean incrementalWrites;
+
+    @Parameter
+    @Summary("Metadata key the content hash of a document is stored under, and read back from when the local index has no entry for its URI and server hashes are enabled.")
+    @Optional(defaultValue = "null")
+    @Example("contentHash")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private String contentHashMetadataKey;
+
+    @Parameter
+    @Summary("Compare a document whose URI the local index has never seen with the content hash stored with it on the server. This reads the metadata of each such document, one request per URI, so it suits seeding a new index rather than routine loads.")
+    @Optional(defaultValue = "false")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private boolean readServerContentHashes;
+
+    @Parameter
+    @Summary("How long, in milliseconds, insertion batchers may take to write their queued documents when the connection is closed; 0 waits as long as it takes.")
+    @Optional(defaultValue = "0")
+    @Example("30000")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private long drainTimeoutMillis;
+
+    @Parameter
+    @Summary("Number of compiled queries kept per configuration, so repeated queries are not parsed again; 0 disables the cache.")
+    @Optional(defaultValue = "64")
+    @Example("128")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private int queryCacheSize;
+
+    @Parameter
+    @Summary("The number of pages of queryDocs results each connection may cache, when queryDocs is given a cache TTL.")
+    @Optional(defaultValue = "1000")
+    @Example("5000")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private int resultCacheMaxEntries;
+
+    @Parameter
+    @Summary("The estimated size, in bytes, of the queryDocs results each connection may cache, when queryDocs is given a cache TTL.")
+    @Optional(defaultValue = "67108864")
+    @Example("268435456")
+    @Placement(tab = Placement.ADVANCED_TAB)
+    private long resultCacheMaxBytes;
+
+    // Not a parameter; shared by the insertion batchers of this configuration and its write outcome sources
+    private final WriteOutcomeBroadcaster writeOutcomes = new WriteOutcomeBroadcaster();
+
+    // Not a parameter; shared by the operations of this configuration
+    private final QueryDefinitionCache queryDefinitions = new QueryDefinitionCache(this::getQueryCacheSize);
+
+    public WriteOutcomeBroadcaster getWriteOutcomes()
+    {
+        return writeOutcomes;
+    }
+
+    public QueryDefinitionCache getQueryDefinitions()
+    {
+        return queryDefinitions;
+    }
+
     public String getConfigId()
     {
         return configId;
@@ -122,6 +286,111 @@ public class MarkLogicConfiguration
         return jobName;
     }
 
+    public int getMaxQueuedDocuments()
+    {
+        return maxQueuedDocuments;
+    }
+
+    public long getMaxQueuedBytes()
+    {
+        return maxQueuedBytes;
+    }
+
+    public MarkLogicQueueOverflowPolicy getQueueOverflowPolicy()
+    {
+        return queueOverflowPolicy;
+    }
+
+    public String getSpoolDirectory()
+    {
+        return spoolDirectory;
+    }
+
+    public int getMaxBatchRetries()
+    {
+        return maxBatchRetries;
+    }
+
+    public long getRetryInitialDelayMillis()
+    {
+        return retryInitialDelayMillis;
+    }
+
+    public long getRetryMaxDelayMillis()
+    {
+        return retryMaxDelayMillis;
+    }
+
+    public boolean isJournalEnabled()
+    {
+        return journalEnabled;
+    }
+
+    public boolean isAdaptiveBatching()
+    {
+        return adaptiveBatching;
+    }
+
+    public long getTargetBatchLatencyMillis()
+    {
+        return targetBatchLatencyMillis;
+    }
+
+    public int getMaxInsertionBatchers()
+    {
+        return maxInsertionBatchers;
+    }
+
+    public int getBatcherIdleTimeoutSeconds()
+    {
+        return batcherIdleTimeoutSeconds;
+    }
+
+    public long getMaxFlushLatencyMillis()
+    {
+        return maxFlushLatencyMillis;
+    }
+
+    public long getMaxBatchBytes()
+    {
+        return maxBatchBytes;
+    }
+
+    public boolean isIncrementalWrites()
+    {
+        return incrementalWrites;
+    }
+
+    public String getContentHashMetadataKey()
+    {
+        return contentHashMetadataKey;
+    }
+
+    public boolean isReadServerContentHashes()
+    {
+        return readServerContentHashes;
+    }
+
+    public long getDrainTimeoutMillis()
+    {
+        return drainTimeoutMillis;
+    }
+
+    public int getQueryCacheSize()
+    {
+        return queryCacheSize;
+    }
+
+    public int getResultCacheMaxEntries()
+    {
+        return resultCacheMaxEntries;
+    }
+
+    public long getResultCacheMaxBytes()
+    {
+        return resultCacheMaxBytes;
+    }
+
     public void setConfigId(String configId)
     {
         this.configId = configId;
@@ -157,6 +426,111 @@ public class MarkLogicConfiguration
         this.jobName = jobName;
     }
 
+    public void setMaxQueuedDocuments(int maxQueuedDocuments)
+    {
+        this.maxQueuedDocuments = maxQueuedDocuments;
+    }
+
+    public void setMaxQueuedBytes(long maxQueuedBytes)
+    {
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    public void setQueueOverflowPolicy(MarkLogicQueueOverflowPolicy queueOverflowPolicy)
+    {
+        this.queueOverflowPolicy = queueOverflowPolicy;
+    }
+
+    public void setSpoolDirectory(String spoolDirectory)
+    {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public void setMaxBatchRetries(int maxBatchRetries)
+    {
+        this.maxBatchRetries = maxBatchRetries;
+    }
+
+    public void setRetryInitialDelayMillis(long retryInitialDelayMillis)
+    {
+        this.retryInitialDelayMillis = retryInitialDelayMillis;
+    }
+
+    public void setRetryMaxDelayMillis(long retryMaxDelayMillis)
+    {
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
+
+    public void setJournalEnabled(boolean journalEnabled)
+    {
+        this.journalEnabled = journalEnabled;
+    }
+
+    public void setAdaptiveBatching(boolean adaptiveBatching)
+    {
+        this.adaptiveBatching = adaptiveBatching;
+    }
+
+    public void setTargetBatchLatencyMillis(long targetBatchLatencyMillis)
+    {
+        this.targetBatchLatencyMillis = targetBatchLatencyMillis;
+    }
+
+    public void setMaxInsertionBatchers(int maxInsertionBatchers)
+    {
+        this.maxInsertionBatchers = maxInsertionBatchers;
+    }
+
+    public void setBatcherIdleTimeoutSeconds(int batcherIdleTimeoutSeconds)
+    {
+        this.batcherIdleTimeoutSeconds = batcherIdleTimeoutSeconds;
+    }
+
+    public void setMaxFlushLatencyMillis(long maxFlushLatencyMillis)
+    {
+        this.maxFlushLatencyMillis = maxFlushLatencyMillis;
+    }
+
+    public void setMaxBatchBytes(long maxBatchBytes)
+    {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public void setIncrementalWrites(boolean incrementalWrites)
+    {
+        this.incrementalWrites = incrementalWrites;
+    }
+
+    public void setContentHashMetadataKey(String contentHashMetadataKey)
+    {
+        this.contentHashMetadataKey = contentHashMetadataKey;
+    }
+
+    public void setReadServerContentHashes(boolean readServerContentHashes)
+    {
+        this.readServerContentHashes = readServerContentHashes;
+    }
+
+    public void setDrainTimeoutMillis(long drainTimeoutMillis)
+    {
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    public void setQueryCacheSize(int queryCacheSize)
+    {
+        this.queryCacheSize = queryCacheSize;
+    }
+
+    public void setResultCacheMaxEntries(int resultCacheMaxEntries)
+    {
+        this.resultCacheMaxEntries = resultCacheMaxEntries;
+    }
+
+    public void setResultCacheMaxBytes(long resultCacheMaxBytes)
+    {
+        this.resultCacheMaxBytes = resultCacheMaxBytes;
+    }
+
     /**
      *
      * @param transformName
@@ -228,11 +602,37 @@ public class MarkLogicConfiguration
                 .append(serverTransform, that.serverTransform)
                 .append(serverTransformParams, that.serverTransformParams)
                 .append(jobName, that.jobName)
+                .append(maxQueuedDocuments, that.maxQueuedDocuments)
+                .append(maxQueuedBytes, that.maxQueuedBytes)
+                .append(queueOverflowPolicy, that.queueOverflowPolicy)
+                .append(spoolDirectory, that.spoolDirectory)
+                .append(maxBatchRetries, that.maxBatchRetries)
+                .append(retryInitialDelayMillis, that.retryInitialDelayMillis)
+                .append(retryMaxDelayMillis, that.retryMaxDelayMillis)
+                .append(journalEnabled, that.journalEnabled)
+                .append(adaptiveBatching, that.adaptiveBatching)
+                .append(targetBatchLatencyMillis, that.targetBatchLatencyMillis)
+                .append(maxInsertionBatchers, that.maxInsertionBatchers)
+                .append(batcherIdleTimeoutSeconds, that.batcherIdleTimeoutSeconds)
+                .append(maxFlushLatencyMillis, that.maxFlushLatencyMillis)
+                .append(maxBatchBytes, that.maxBatchBytes)
+                .append(incrementalWrites, that.incrementalWrites)
+                .append(contentHashMetadataKey, that.contentHashMetadataKey)
+                .append(readServerContentHashes, that.readServerContentHashes)
+                .append(drainTimeoutMillis, that.drainTimeoutMillis)
+                .append(queryCacheSize, that.queryCacheSize)
+                .append(resultCacheMaxEntries, that.resultCacheMaxEntries)
+                .append(resultCacheMaxBytes, that.resultCacheMaxBytes)
                 .isEquals();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(configId, threadCount, batchSize, serverTransform, serverTransformParams, secondsBeforeFlush, jobName);
+        return Objects.hash(configId, threadCount, batchSize, serverTransform, serverTransformParams, secondsBeforeFlush, jobName,
+            maxQueuedDocuments, maxQueuedBytes, queueOverflowPolicy, spoolDirectory, maxBatchRetries, retryInitialDelayMillis,
+            retryMaxDelayMillis, journalEnabled, adaptiveBatching, targetBatchLatencyMillis,
+            maxInsertionBatchers, batcherIdleTimeoutSeconds, maxFlushLatencyMillis, maxBatchBytes,
+            incrementalWrites, contentHashMetadataKey, readServerContentHashes, drainTimeoutMillis, queryCacheSize,
+            resultCacheMaxEntries, resultCacheMaxBytes);
     }
 }
\ No newline at end of file
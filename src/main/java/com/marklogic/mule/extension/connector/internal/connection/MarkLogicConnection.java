@@ -23,9 +23,13 @@ import com.marklogic.mule.extension.connector.api.connection.AuthenticationType;
 import com.marklogic.mule.extension.connector.api.connection.MarkLogicConnectionType;
 import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
 import com.marklogic.mule.extension.connector.internal.connection.provider.MarkLogicConnectionProvider;
+import com.marklogic.mule.extension.connector.internal.metrics.MetricsRegistry;
 import com.marklogic.mule.extension.connector.internal.operation.InsertionBatcherContext;
+import com.marklogic.mule.extension.connector.internal.operation.InsertionBatcherRegistry;
+import com.marklogic.mule.extension.connector.internal.operation.JobReportHistory;
 import com.marklogic.mule.extension.connector.internal.operation.MarkLogicConnectionInvalidationListener;
 import com.marklogic.mule.extension.connector.internal.operation.MarkLogicInsertionBatcher;
+import com.marklogic.mule.extension.connector.internal.result.resultset.QueryResultCache;
 import org.mule.runtime.api.connection.ConnectionException;
 import org.mule.runtime.api.scheduler.SchedulerService;
 import org.slf4j.Logger;
@@ -42,11 +46,11 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.cert.CertificateException;
+import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ScheduledExecutorService;
 
 public final class MarkLogicConnection
 {
@@ -64,8 +68,11 @@ public final class MarkLogicConnection
     private final String kerberosExternalName;
     private final String connectionId;
     private Set<MarkLogicConnectionInvalidationListener> markLogicClientInvalidationListeners = new HashSet<>();
-    private final HashMap<Integer, MarkLogicInsertionBatcher> insertionBatchers;
-    private final ReentrantLock insertionBatchersLock;
+    private final InsertionBatcherRegistry insertionBatchers;
+    private final JobReportHistory jobReportHistory = new JobReportHistory();
+    private final MetricsRegistry metrics;
+    private final QueryResultCache queryResults = new QueryResultCache();
+    private ScheduledExecutorService ioScheduler;
     private final SchedulerService schedulerService;
     private final MarkLogicConnectionProvider connectionProvider;
 
@@ -76,8 +83,7 @@ public final class MarkLogicConnection
     public MarkLogicConnection(MarkLogicConnectionProvider provider, SchedulerService schedulerService) {
         this.connectionProvider = provider;
         this.schedulerService = schedulerService;
-        this.insertionBatchers = new HashMap<>();
-        this.insertionBatchersLock = new ReentrantLock(true);
+        this.insertionBatchers = new InsertionBatcherRegistry(schedulerService);
 
         this.hostname = provider.getHostname();
         this.port = provider.getPort();
@@ -88,6 +94,7 @@ public final class MarkLogicConnection
         this.marklogicConnectionType = provider.getMarklogicConnectionType();
         this.kerberosExternalName = provider.getKerberosExternalName();
         this.connectionId = provider.getConnectionId();
+        this.metrics = new MetricsRegistry(connectionId);
     }
 
     public void connect() throws ConnectionException
@@ -96,6 +103,7 @@ public final class MarkLogicConnection
         LOGGER.info("MarkLogic connection id = {}", this.getId());
         try {
             this.createClient();
+            metrics.start();
         } catch (Exception e) {
             throw new ConnectionException("Could not create connection to MarkLogic", e);
         }
@@ -115,7 +123,10 @@ public final class MarkLogicConnection
     {
         markLogicClientInvalidationListeners.forEach(MarkLogicConnectionInvalidationListener::markLogicConnectionInvalidated);
         releaseInsertionBatchers();
+        queryResults.invalidateAll();
+        stopIoScheduler();
         client.release();
+        metrics.close();
         LOGGER.info("MarkLogic connection invalidated.");
     }
     
@@ -254,47 +265,60 @@ public final class MarkLogicConnection
         return KeyStore.getInstance(trustStoreType);
     }
 	
-	public MarkLogicInsertionBatcher getInsertionBatcher(MarkLogicConfiguration config, String outputCollections, String outputPermissions,
-                                                         int outputQuality, String temporalCollection,
+	/**
+	 * Returns the insertion batcher for the given inputs with a lease on it; the caller must hand the lease back
+	 * through {@link MarkLogicInsertionBatcher#releaseLease()} once it is done adding documents.
+	 */
+	public MarkLogicInsertionBatcher getInsertionBatcher(MarkLogicConfiguration config, String temporalCollection,
                                                          String serverTransform, String serverTransformParams) {
         InsertionBatcherContext context = new InsertionBatcherContext();
         context.setConfiguration(config);
         context.setConnection(this);
-        context.setOutputCollections(outputCollections);
-        context.setOutputPermissions(outputPermissions);
-        context.setOutputQuality(outputQuality);
         context.setJobName(config.getJobName());
         context.setTemporalCollection(temporalCollection);
         context.setServerTransform(serverTransform);
         context.setServerTransformParams(serverTransformParams);
-        final int signature = context.computeSignature();
+        return insertionBatchers.lease(context);
+    }
 
-        insertionBatchersLock.lock();
-        try {
-            MarkLogicInsertionBatcher insertionBatcher = insertionBatchers.getOrDefault(signature, null);
-            if (insertionBatcher == null) {
-                insertionBatcher = new MarkLogicInsertionBatcher(context, schedulerService);
-                insertionBatchers.put(insertionBatcher.getSignature(), insertionBatcher);
-                if (insertionBatcher.getSignature() != signature) {
-                    LOGGER.warn("Computed batcher signature {} different than generated by instance {}", signature, insertionBatcher.getSignature());
-                }
-            }
-            return insertionBatcher;
+    public Collection<MarkLogicInsertionBatcher> getInsertionBatchers() {
+        return insertionBatchers.getBatchers();
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public JobReportHistory getJobReportHistory() {
+        return jobReportHistory;
+    }
+
+    /**
+     * @return the Mule IO scheduler used for background work of this connection, such as fetching query results ahead
+     * of a flow, or null if no SchedulerService was injected
+     */
+    public synchronized ScheduledExecutorService getIoScheduler() {
+        if (ioScheduler == null) {
+            ioScheduler = MarkLogicInsertionBatcher.ioScheduler(schedulerService);
         }
-        finally {
-            insertionBatchersLock.unlock();
+        return ioScheduler;
+    }
+
+    private synchronized void stopIoScheduler() {
+        if (ioScheduler != null) {
+            ioScheduler.shutdownNow();
+            ioScheduler = null;
         }
     }
 
+    /**
+     * @return the recently read pages of queryDocs results, which documents written through this connection invalidate
+     */
+    public QueryResultCache getQueryResults() {
+        return queryResults;
+    }
+
     private void releaseInsertionBatchers() {
-        insertionBatchersLock.lock();
-        try {
-            for (MarkLogicInsertionBatcher insertionBatcher : insertionBatchers.values()) {
-                insertionBatcher.release();
-            }
-        }
-        finally {
-            insertionBatchersLock.unlock();
-        }
+        insertionBatchers.releaseAll();
     }
 }
@@ -17,5 +17,7 @@ import org.mule.runtime.extension.api.error.ErrorTypeDefinition;
 
 public enum MarkLogicConnectorSimpleErrorType implements ErrorTypeDefinition<MarkLogicConnectorSimpleErrorType>
 {
-    DATA_MOVEMENT_ERROR
+    DATA_MOVEMENT_ERROR,
+    QUEUE_FULL,
+    COMMIT_TIMEOUT
 }
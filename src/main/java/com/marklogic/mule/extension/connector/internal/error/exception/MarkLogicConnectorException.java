@@ -31,4 +31,9 @@ public class MarkLogicConnectorException extends ModuleException
     {
         super(errorMessage, MarkLogicConnectorSimpleErrorType.DATA_MOVEMENT_ERROR, error);
     }
+
+    public MarkLogicConnectorException(String errorMessage, MarkLogicConnectorSimpleErrorType errorType)
+    {
+        super(errorMessage, errorType);
+    }
 }
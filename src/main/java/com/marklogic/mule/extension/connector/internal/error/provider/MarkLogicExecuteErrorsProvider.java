@@ -31,6 +31,8 @@ public class MarkLogicExecuteErrorsProvider implements ErrorTypeProvider
         @SuppressWarnings("java:S3740")
         Set<ErrorTypeDefinition> errors = new HashSet<>();
         errors.add(MarkLogicConnectorSimpleErrorType.DATA_MOVEMENT_ERROR);
+        errors.add(MarkLogicConnectorSimpleErrorType.QUEUE_FULL);
+        errors.add(MarkLogicConnectorSimpleErrorType.COMMIT_TIMEOUT);
         return errors;
     }
 }
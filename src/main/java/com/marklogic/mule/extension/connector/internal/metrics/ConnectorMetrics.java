@@ -0,0 +1,131 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the invocations, errors, and documents of an operation or insertion batcher, and records their latencies.
+ * Instances are created once and held by whatever records into them, so that recording never allocates.
+ */
+public final class ConnectorMetrics implements ConnectorMetricsMXBean
+{
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder documents = new LongAdder();
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * @param nanos how long the invocation or batch took
+     * @param documentCount the number of documents it handled
+     * @param failed whether it failed
+     */
+    public void record(long nanos, long documentCount, boolean failed)
+    {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        } else {
+            documents.add(documentCount);
+        }
+    }
+
+    /**
+     * Records an invocation that gave up waiting for its documents to be written, which are still queued and so are
+     * counted neither as errors nor as documents handled.
+     *
+     * @param nanos how long the invocation waited
+     */
+    public void recordTimeout(long nanos)
+    {
+        latency.record(nanos);
+        timeouts.increment();
+    }
+
+    LatencyHistogram getLatency()
+    {
+        return latency;
+    }
+
+    @Override
+    public long getCount()
+    {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount()
+    {
+        return errors.sum();
+    }
+
+    @Override
+    public long getTimeoutCount()
+    {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getDocumentCount()
+    {
+        return documents.sum();
+    }
+
+    @Override
+    public double getDocumentsPerSecond()
+    {
+        long elapsedNanos = System.nanoTime() - createdNanos;
+        return elapsedNanos > 0 ? documents.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    @Override
+    public double getMeanLatencyMillis()
+    {
+        return latency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxLatencyMillis()
+    {
+        return latency.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50LatencyMillis()
+    {
+        return latency.getValueAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP90LatencyMillis()
+    {
+        return latency.getValueAtPercentile(90) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99LatencyMillis()
+    {
+        return latency.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999LatencyMillis()
+    {
+        return latency.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the metrics of a connection: one {@link ConnectorMetrics} per operation, created up front, and one per
+ * insertion batcher, created with the batcher. Each is published as an MXBean named
+ * {@code com.marklogic.mule.connector:type=Operation,connection=<id>,name=<operation>} or
+ * {@code com.marklogic.mule.connector:type=InsertionBatcher,connection=<id>,signature=<signature>}.
+ */
+public class MetricsRegistry
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    static final String DOMAIN = "com.marklogic.mule.connector";
+
+    /**
+     * The operations whose invocations are measured.
+     */
+    public enum Operation
+    {
+        IMPORT_DOCS("importDocs"),
+        IMPORT_DOCS_BULK("importDocsBulk"),
+        QUERY_DOCS("queryDocs"),
+        EXPORT_DOCS("exportDocs"),
+        DELETE_DOCS("deleteDocs");
+
+        private final String operationName;
+
+        Operation(String operationName)
+        {
+            this.operationName = operationName;
+        }
+
+        public String getOperationName()
+        {
+            return operationName;
+        }
+    }
+
+    private final String connectionId;
+    private final ConnectorMetrics[] operations = new ConnectorMetrics[Operation.values().length];
+    private final Map<ObjectName, ConnectorMetrics> registered = new ConcurrentHashMap<>();
+
+    public MetricsRegistry(String connectionId)
+    {
+        this.connectionId = String.valueOf(connectionId);
+        for (Operation operation : Operation.values()) {
+            operations[operation.ordinal()] = new ConnectorMetrics();
+        }
+    }
+
+    /**
+     * Publishes the operation metrics over JMX.
+     */
+    public void start()
+    {
+        for (Operation operation : Operation.values()) {
+            register("type=Operation,connection=" + ObjectName.quote(connectionId) + ",name=" + operation.getOperationName(),
+                operations[operation.ordinal()]);
+        }
+    }
+
+    public ConnectorMetrics operation(Operation operation)
+    {
+        return operations[operation.ordinal()];
+    }
+
+    /**
+     * Creates and publishes the metrics of an insertion batcher.
+     */
+    public ConnectorMetrics insertionBatcher(int signature)
+    {
+        ConnectorMetrics metrics = new ConnectorMetrics();
+        register("type=InsertionBatcher,connection=" + ObjectName.quote(connectionId) + ",signature=" + signature, metrics);
+        return metrics;
+    }
+
+    /**
+     * Withdraws metrics published by this registry.
+     */
+    public void unregister(ConnectorMetrics metrics)
+    {
+        registered.forEach((name, registeredMetrics) -> {
+            if (registeredMetrics == metrics) {
+                unregister(name);
+            }
+        });
+    }
+
+    /**
+     * Withdraws every metric published by this registry.
+     */
+    public void close()
+    {
+        registered.keySet().forEach(this::unregister);
+    }
+
+    private void register(String properties, ConnectorMetrics metrics)
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            // A connection with the same ID replaces the metrics of the one it succeeds
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+            registered.put(name, metrics);
+        } catch (JMException | RuntimeException ex) {
+            LOGGER.warn("Unable to publish metrics {} over JMX", properties, ex);
+        }
+    }
+
+    private void unregister(ObjectName name)
+    {
+        registered.remove(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ex) {
+            LOGGER.debug("Metrics {} were already withdrawn", name, ex);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Adjusts the effective batch size and the number of concurrently written batches of an insertion batcher toward a
+ * target batch latency.
+ * <p>
+ * DMSDK fixes the batch size and thread count of a WriteBatcher when its job starts, so the configured values act as
+ * upper bounds: a smaller batch size is applied by flushing the batcher every time that many documents have been
+ * added, and a lower concurrency by holding back callers while more than that many batches are in flight. Latency is
+ * measured from the moment the last document of a batch is added until the batch completes. Batches that complete
+ * well under the target grow the batch size, and then the concurrency; batches that are slow, or that fail, shrink
+ * them multiplicatively.
+ */
+class AdaptiveBatchController
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveBatchController.class);
+
+    private final int maxBatchSize;
+    private final int maxConcurrency;
+    private final long targetLatencyNanos;
+
+    // Added-document counts at which a batch was closed, with the time it was closed
+    private final Deque<long[]> closedBatches = new ArrayDeque<>();
+
+    private int batchSize;
+    private int concurrency;
+    private long added;
+    private long completed;
+    private long lastBoundary;
+    private boolean closed;
+
+    AdaptiveBatchController(int maxBatchSize, int maxConcurrency, long targetLatencyMillis)
+    {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.targetLatencyNanos = Math.max(1, targetLatencyMillis) * 1_000_000L;
+        this.batchSize = Math.max(1, this.maxBatchSize / 4);
+        this.concurrency = this.maxConcurrency;
+    }
+
+    /**
+     * Waits while the batches in flight use up the current concurrency.
+     *
+     * @param flush called before waiting, so that a partially filled batch does not hold up the caller
+     */
+    synchronized void acquire(Runnable flush) throws InterruptedException
+    {
+        if (!closed && added - completed >= (long) batchSize * concurrency) {
+            flush.run();
+            while (!closed && added - completed >= (long) batchSize * concurrency) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Records a document handed to the batcher.
+     *
+     * @return true if the current batch is full and the batcher should be flushed
+     */
+    synchronized boolean recordAdd()
+    {
+        added++;
+        if (added - lastBoundary >= batchSize) {
+            lastBoundary = added;
+            closedBatches.addLast(new long[]{added, System.nanoTime()});
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records documents whose batch has been written or has finally failed.
+     */
+    synchronized void recordCompleted(int documents)
+    {
+        completed += documents;
+        long[] batch = null;
+        while (!closedBatches.isEmpty() && closedBatches.peekFirst()[0] <= completed) {
+            batch = closedBatches.pollFirst();
+        }
+        if (batch != null) {
+            adjust(System.nanoTime() - batch[1]);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Backs off after the cluster rejected a batch.
+     */
+    synchronized void recordFailure()
+    {
+        batchSize = Math.max(1, batchSize / 2);
+        concurrency = Math.max(1, concurrency / 2);
+        LOGGER.debug("Batch failed; batch size reduced to {} and concurrency to {}", batchSize, concurrency);
+    }
+
+    synchronized void close()
+    {
+        closed = true;
+        notifyAll();
+    }
+
+    synchronized int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    synchronized int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    private void adjust(long latencyNanos)
+    {
+        if (latencyNanos > targetLatencyNanos + targetLatencyNanos / 5) {
+            batchSize = Math.max(1, batchSize - Math.max(1, batchSize / 4));
+            if (batchSize == 1) {
+                concurrency = Math.max(1, concurrency - 1);
+            }
+        } else if (latencyNanos < targetLatencyNanos - targetLatencyNanos / 5) {
+            if (batchSize < maxBatchSize) {
+                batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, batchSize / 10));
+            } else if (concurrency < maxConcurrency) {
+                concurrency++;
+            }
+        } else {
+            return;
+        }
+        LOGGER.debug("Batch latency {} ms; batch size is now {} and concurrency {}", latencyNanos / 1_000_000L, batchSize, concurrency);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.datamovement.WriteBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Re-submits the contents of a failed {@link WriteBatch} with capped exponential backoff and jitter. Once the
+ * configured number of attempts is exhausted, the batch is handed to a callback, which typically writes its
+ * documents to a dead-letter spool.
+ * <p>
+ * Retries rely on {@code WriteBatcher.retry}, which writes the batch in the calling thread and notifies the success
+ * listeners when it succeeds, so the content of the batch has to be replayable (i.e. not a one-shot stream). Once the
+ * job has been stopped, e.g. by a drain, the batch can no longer be retried and is handed to the callback at once.
+ * Retries waiting out their backoff are not known to the WriteBatcher, so a drain waits for them through
+ * {@link #awaitRetries(long)} before stopping the job.
+ */
+class BatchRetryHandler
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchRetryHandler.class);
+
+    private final int maxRetries;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService scheduler;
+    private final BiConsumer<WriteBatch, Throwable> onExhausted;
+    // Retries scheduled on the scheduler that have not finished yet; guarded by this
+    private int pendingRetries;
+
+    /**
+     * @param scheduler runs the retries after their backoff delay; when null, retries run at once in the thread that
+     *                  reported the failure, without backoff, rather than holding that writer thread while waiting
+     */
+    BatchRetryHandler(int maxRetries, long initialDelayMillis, long maxDelayMillis, ScheduledExecutorService scheduler,
+                      BiConsumer<WriteBatch, Throwable> onExhausted)
+    {
+        this.maxRetries = maxRetries;
+        this.initialDelayMillis = Math.max(1, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+        this.scheduler = scheduler;
+        this.onExhausted = onExhausted;
+    }
+
+    void onBatchFailure(WriteBatch batch, Throwable failure)
+    {
+        scheduleRetry(batch, 1, failure);
+    }
+
+    private void scheduleRetry(WriteBatch batch, int attempt, Throwable lastFailure)
+    {
+        if (batch.getBatcher().isStopped())
+        {
+            LOGGER.error("Not retrying batch {} of job {} because the job has been stopped", batch.getJobBatchNumber(),
+                batch.getJobTicket().getJobId(), lastFailure);
+            onExhausted.accept(batch, lastFailure);
+            return;
+        }
+        if (attempt > maxRetries)
+        {
+            LOGGER.error("Giving up on batch {} of job {} after {} retries", batch.getJobBatchNumber(),
+                batch.getJobTicket().getJobId(), maxRetries, lastFailure);
+            onExhausted.accept(batch, lastFailure);
+            return;
+        }
+
+        long delay = scheduler != null ? computeDelay(attempt) : 0;
+        LOGGER.warn("Retrying batch {} of job {} in {} ms (attempt {} of {}); cause: {}", batch.getJobBatchNumber(),
+            batch.getJobTicket().getJobId(), delay, attempt, maxRetries, lastFailure.getMessage());
+        Runnable retry = () -> {
+            try
+            {
+                batch.getBatcher().retry(batch);
+            }
+            catch (Exception ex)
+            {
+                scheduleRetry(batch, attempt + 1, ex);
+            }
+        };
+
+        if (scheduler == null)
+        {
+            retry.run();
+            return;
+        }
+        retryStarted();
+        try
+        {
+            scheduler.schedule(() -> {
+                try
+                {
+                    retry.run();
+                }
+                finally
+                {
+                    retryFinished();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            retryFinished();
+            LOGGER.error("Not retrying batch {} of job {} because the scheduler is stopping", batch.getJobBatchNumber(),
+                batch.getJobTicket().getJobId(), lastFailure);
+            onExhausted.accept(batch, lastFailure);
+        }
+    }
+
+    private synchronized void retryStarted()
+    {
+        pendingRetries++;
+    }
+
+    private synchronized void retryFinished()
+    {
+        pendingRetries--;
+        if (pendingRetries == 0)
+        {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the retries that are waiting out their backoff, or are being written, to finish. A retry that fails
+     * again and is scheduled once more is waited for as well.
+     *
+     * @param timeoutMillis how long to wait; 0 waits as long as it takes
+     * @return true if no retry is pending any more
+     */
+    synchronized boolean awaitRetries(long timeoutMillis) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (pendingRetries > 0)
+        {
+            if (timeoutMillis <= 0)
+            {
+                wait();
+                continue;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0)
+            {
+                return false;
+            }
+            wait(remainingMillis);
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the delay with every attempt, up to the maximum, and picks a random delay between half of that and the
+     * full value so that batches failing together do not all hit the cluster again at the same moment.
+     */
+    long computeDelay(int attempt)
+    {
+        long ceiling = initialDelayMillis << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis)
+        {
+            ceiling = maxDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.marker.AbstractWriteHandle;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
+import org.apache.commons.io.IOUtils;
+import org.mule.runtime.api.metadata.TypedValue;
+import org.mule.runtime.api.streaming.bytes.CursorStreamProvider;
+import org.mule.runtime.api.streaming.object.CursorIteratorProvider;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Turns the payload handed to importDocsBulk into a sequence of individual documents, so that the whole sequence
+ * can be fed into a single {@link MarkLogicInsertionBatcher} in one operation invocation.
+ * <p>
+ * Two payload shapes are supported:
+ * <ul>
+ *     <li>An {@link Iterable}, {@link Iterator}, or {@link CursorIteratorProvider} (e.g. a Mule streaming array or a
+ *     list built by a batch aggregator);
+ *     each element may be a stream, a byte array, a string, or a structured value that is serialized as JSON.</li>
+ *     <li>An {@link InputStream} containing either a JSON array or JSON Lines; each top-level value is a document.</li>
+ * </ul>
+ * Structured records are serialized as JSON, and the optional JSON pointer is evaluated against each of them to
+ * determine the basename of its URI.
+ */
+class BulkPayloadReader implements Iterator<BulkPayloadReader.BulkDocument>, Closeable
+{
+    private final ObjectMapper objectMapper;
+    private final Iterator<?> elements;
+    private final MappingIterator<JsonNode> jsonRecords;
+    private final String uriJsonPointer;
+    // The cursor opened on a streamed payload, closed along with the reader
+    private final Closeable payloadCursor;
+
+    BulkPayloadReader(Object payload, String uriJsonPointer, ObjectMapper objectMapper)
+    {
+        this.objectMapper = objectMapper;
+        this.uriJsonPointer = uriJsonPointer;
+        Object value = payload instanceof TypedValue ? ((TypedValue<?>) payload).getValue() : payload;
+        if (value instanceof CursorStreamProvider) {
+            value = ((CursorStreamProvider) value).openCursor();
+            this.payloadCursor = (Closeable) value;
+        } else if (value instanceof CursorIteratorProvider) {
+            value = ((CursorIteratorProvider) value).openCursor();
+            this.payloadCursor = (Closeable) value;
+        } else {
+            this.payloadCursor = null;
+        }
+
+        if (value instanceof InputStream) {
+            this.elements = null;
+            try {
+                this.jsonRecords = objectMapper.readerFor(JsonNode.class).readValues((InputStream) value);
+            } catch (IOException ex) {
+                IOUtils.closeQuietly((InputStream) value);
+                throw new MarkLogicConnectorException("Unable to read bulk payload as a JSON array or JSON Lines", ex);
+            }
+        } else if (value instanceof Iterable) {
+            this.elements = ((Iterable<?>) value).iterator();
+            this.jsonRecords = null;
+        } else if (value instanceof Iterator) {
+            this.elements = (Iterator<?>) value;
+            this.jsonRecords = null;
+        } else {
+            throw new MarkLogicConnectorException("Unsupported bulk payload type: " +
+                (value == null ? "null" : value.getClass().getName()));
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return elements != null ? elements.hasNext() : jsonRecords.hasNext();
+    }
+
+    @Override
+    public BulkDocument next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return elements != null ? toDocument(elements.next()) : toJsonDocument(jsonRecords.next());
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            if (jsonRecords != null) {
+                jsonRecords.close();
+            }
+        } finally {
+            if (payloadCursor != null) {
+                payloadCursor.close();
+            }
+        }
+    }
+
+    private BulkDocument toDocument(Object element)
+    {
+        Object value = element instanceof TypedValue ? ((TypedValue<?>) element).getValue() : element;
+        if (value instanceof CursorStreamProvider) {
+            // Read the content now, so that the cursor is not left open until the event completes
+            try (InputStream cursor = ((CursorStreamProvider) value).openCursor()) {
+                return new BulkDocument(null, new BytesHandle(IOUtils.toByteArray(cursor)));
+            } catch (IOException ex) {
+                throw new MarkLogicConnectorException("Unable to read bulk record", ex);
+            }
+        }
+
+        if (value instanceof InputStream) {
+            return new BulkDocument(null, new InputStreamHandle((InputStream) value));
+        }
+        if (value instanceof byte[]) {
+            return new BulkDocument(null, new BytesHandle((byte[]) value));
+        }
+        if (value instanceof CharSequence) {
+            return new BulkDocument(null, new BytesHandle(value.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        if (value instanceof JsonNode) {
+            return toJsonDocument((JsonNode) value);
+        }
+        if (value instanceof Map || value instanceof Collection || value instanceof Number || value instanceof Boolean) {
+            return toJsonDocument(objectMapper.valueToTree(value));
+        }
+        throw new MarkLogicConnectorException("Unsupported bulk record type: " +
+            (value == null ? "null" : value.getClass().getName()));
+    }
+
+    private BulkDocument toJsonDocument(JsonNode record)
+    {
+        String basename = null;
+        if (uriJsonPointer != null) {
+            JsonNode uriNode = record.at(uriJsonPointer);
+            if (uriNode.isValueNode()) {
+                basename = uriNode.asText();
+            }
+        }
+        try {
+            return new BulkDocument(basename, new BytesHandle(objectMapper.writeValueAsBytes(record)).withFormat(Format.JSON));
+        } catch (IOException ex) {
+            throw new MarkLogicConnectorException("Unable to serialize bulk record as JSON", ex);
+        }
+    }
+
+    /**
+     * A single document read from a bulk payload; the basename is null when it could not be derived from the record.
+     */
+    static final class BulkDocument
+    {
+        private final String basename;
+        private AbstractWriteHandle content;
+
+        BulkDocument(String basename, AbstractWriteHandle content)
+        {
+            this.basename = basename;
+            this.content = content;
+        }
+
+        String getBasename()
+        {
+            return basename;
+        }
+
+        AbstractWriteHandle getContent()
+        {
+            return content;
+        }
+
+        /**
+         * Reads the content into memory, if it is not already, so that it can be inspected before it is written.
+         */
+        byte[] bufferContent()
+        {
+            if (content instanceof InputStreamHandle) {
+                InputStreamHandle streamHandle = (InputStreamHandle) content;
+                try (InputStream stream = streamHandle.get()) {
+                    content = new BytesHandle(IOUtils.toByteArray(stream)).withFormat(streamHandle.getFormat());
+                } catch (IOException ex) {
+                    throw new MarkLogicConnectorException("Unable to read bulk record", ex);
+                }
+            }
+            return ((BytesHandle) content).get();
+        }
+    }
+}
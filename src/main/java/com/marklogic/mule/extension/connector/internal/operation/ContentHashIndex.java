@@ -0,0 +1,260 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Remembers a hash of the content last written to each URI, so that an insertion batcher can skip documents that
+ * have not changed since.
+ * <p>
+ * The index is an open-addressing hash table held in a memory-mapped file, so that it neither grows the heap nor has
+ * to be loaded when the batcher is initialized. Each slot holds a 64-bit fingerprint of a URI and the first 128 bits
+ * of the SHA-256 of its content; a document is only skipped if both match. The table is doubled into a new file once
+ * it is 70% full. Like the journal, slots are written to the page cache and only forced to disk when the table is
+ * grown or closed; an operating system crash may lose recent entries, which only means those documents are written
+ * again.
+ */
+class ContentHashIndex implements Closeable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentHashIndex.class);
+
+    static final int HASH_BYTES = 16;
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    static final String FILE_NAME = "content-hashes.index";
+
+    private static final int MAGIC = 0x4d4c4349;
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 8 + HASH_BYTES;
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private long size;
+
+    ContentHashIndex(Path directory, int initialCapacity) throws IOException
+    {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(FILE_NAME);
+        if (Files.exists(file) && open(file)) {
+            LOGGER.info("Opened content hash index {} holding {} URIs", file, size);
+        } else {
+            create(file, Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1));
+        }
+    }
+
+    /**
+     * Computes the hash the index keeps for a document's content.
+     */
+    static byte[] hash(byte[] content)
+    {
+        return Arrays.copyOf(OutputUriGenerator.sha256(content), HASH_BYTES);
+    }
+
+    static String toHex(byte[] hash)
+    {
+        return OutputUriGenerator.hex(hash, HASH_BYTES);
+    }
+
+    /**
+     * @return the hash written by {@link #toHex(byte[])}, or null if the value is not one
+     */
+    static byte[] fromHex(String value)
+    {
+        if (value == null || value.length() != HASH_BYTES * 2) {
+            return null;
+        }
+        byte[] hash = new byte[HASH_BYTES];
+        for (int i = 0; i < HASH_BYTES; i++) {
+            int high = Character.digit(value.charAt(i * 2), 16);
+            int low = Character.digit(value.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            hash[i] = (byte) ((high << 4) | low);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the hash last recorded for the URI, or null if there is none
+     */
+    synchronized byte[] get(String uri)
+    {
+        long fingerprint = fingerprint(uri);
+        int slot = find(fingerprint);
+        if (buffer.getLong(offset(slot)) != fingerprint) {
+            return null;
+        }
+        byte[] hash = new byte[HASH_BYTES];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset(slot) + 8);
+        view.get(hash);
+        return hash;
+    }
+
+    synchronized void put(String uri, byte[] hash) throws IOException
+    {
+        if ((size + 1) * 10 > capacity * 7L) {
+            grow();
+        }
+        long fingerprint = fingerprint(uri);
+        int slot = find(fingerprint);
+        int offset = offset(slot);
+        if (buffer.getLong(offset) != fingerprint) {
+            size++;
+            buffer.putLong(8, size);
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 8);
+        view.put(hash, 0, HASH_BYTES);
+        // The fingerprint goes in last, so that a reader never sees a URI with a partially written hash
+        buffer.putLong(offset, fingerprint);
+    }
+
+    synchronized long size()
+    {
+        return size;
+    }
+
+    Path getFile()
+    {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * @return the slot holding the fingerprint, or the empty slot it would be stored in
+     */
+    private int find(long fingerprint)
+    {
+        int mask = capacity - 1;
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        while (true) {
+            long existing = buffer.getLong(offset(slot));
+            if (existing == 0 || existing == fingerprint) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void grow() throws IOException
+    {
+        int newCapacity = capacity << 1;
+        if (newCapacity <= 0 || HEADER_BYTES + (long) newCapacity * SLOT_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Content hash index " + file + " cannot hold more than " + size + " URIs");
+        }
+        FileChannel oldChannel = channel;
+        MappedByteBuffer oldBuffer = buffer;
+        int oldCapacity = capacity;
+
+        Path grown = file.resolveSibling(FILE_NAME + ".tmp");
+        Files.deleteIfExists(grown);
+        create(grown, newCapacity);
+        long count = 0;
+        ByteBuffer view = oldBuffer.duplicate();
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int offset = offset(slot);
+            long fingerprint = oldBuffer.getLong(offset);
+            if (fingerprint == 0) {
+                continue;
+            }
+            int target = offset(find(fingerprint));
+            view.limit(offset + SLOT_BYTES).position(offset + 8);
+            ByteBuffer hash = buffer.duplicate();
+            hash.position(target + 8);
+            hash.put(view);
+            buffer.putLong(target, fingerprint);
+            count++;
+        }
+        size = count;
+        buffer.putLong(8, size);
+        buffer.force();
+        oldChannel.close();
+        Files.move(grown, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.debug("Grew content hash index {} to {} slots", file, newCapacity);
+    }
+
+    private boolean open(Path path) throws IOException
+    {
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = fileChannel.size();
+        if (length >= HEADER_BYTES && length <= Integer.MAX_VALUE) {
+            MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            int slots = mapped.getInt(4);
+            if (mapped.getInt(0) == MAGIC && slots > 0 && Integer.bitCount(slots) == 1 &&
+                length == HEADER_BYTES + (long) slots * SLOT_BYTES) {
+                this.channel = fileChannel;
+                this.buffer = mapped;
+                this.capacity = slots;
+                this.size = mapped.getLong(8);
+                return true;
+            }
+        }
+        fileChannel.close();
+        LOGGER.warn("Ignoring unreadable content hash index {}; all documents will be written again", path);
+        return false;
+    }
+
+    private void create(Path path, int slots) throws IOException
+    {
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) slots * SLOT_BYTES);
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, slots);
+        mapped.putLong(8, 0);
+        this.channel = fileChannel;
+        this.buffer = mapped;
+        this.capacity = slots;
+        this.size = 0;
+    }
+
+    private static int offset(int slot)
+    {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static long fingerprint(String uri)
+    {
+        long fingerprint = ByteBuffer.wrap(OutputUriGenerator.sha256(uri.getBytes(StandardCharsets.UTF_8))).getLong();
+        // Zero marks an empty slot
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.io.DocumentMetadataHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the {@link DocumentMetadataHandle} built from the comma-separated collections and permissions, and the
+ * quality, passed to importDocs, so that documents sharing the same metadata share a single parsed handle no matter
+ * which insertion batcher they are written by.
+ * <p>
+ * The handles are never modified once built, which is what allows DMSDK to serialize them for concurrent batches.
+ * When the cache reaches its maximum size it is simply cleared; handles that are still in use are unaffected.
+ */
+final class DocumentMetadataCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentMetadataCache.class);
+
+    static final int MAX_ENTRIES = 4096;
+
+    private static final Map<Key, MetadataHandle> CACHE = new ConcurrentHashMap<>();
+
+    private DocumentMetadataCache()
+    {
+    }
+
+    static MetadataHandle get(String outputCollections, String outputPermissions, int outputQuality)
+    {
+        Key key = new Key(outputCollections, outputPermissions, outputQuality);
+        MetadataHandle handle = CACHE.get(key);
+        if (handle == null)
+        {
+            if (CACHE.size() >= MAX_ENTRIES)
+            {
+                LOGGER.debug("Clearing document metadata cache after reaching {} entries", MAX_ENTRIES);
+                CACHE.clear();
+            }
+            handle = CACHE.computeIfAbsent(key, MetadataHandle::new);
+        }
+        return handle;
+    }
+
+    /**
+     * Rebuilds the metadata recorded with a spooled document by {@link MetadataHandle#putProperties(Map)}.
+     */
+    static MetadataHandle get(Map<String, String> properties)
+    {
+        MetadataHandle handle = get(properties.get(MarkLogicInsertionBatcher.OUTPUT_COLLECTIONS),
+            properties.get(MarkLogicInsertionBatcher.OUTPUT_PERMISSIONS),
+            Integer.parseInt(properties.getOrDefault(MarkLogicInsertionBatcher.OUTPUT_QUALITY, "1")));
+        for (Map.Entry<String, String> property : properties.entrySet())
+        {
+            if (property.getKey().startsWith(MarkLogicInsertionBatcher.METADATA_VALUE_PREFIX))
+            {
+                handle = handle.withMetadataValue(
+                    property.getKey().substring(MarkLogicInsertionBatcher.METADATA_VALUE_PREFIX.length()), property.getValue());
+            }
+        }
+        return handle;
+    }
+
+    static int size()
+    {
+        return CACHE.size();
+    }
+
+    private static final class Key
+    {
+        private final String outputCollections;
+        private final String outputPermissions;
+        private final int outputQuality;
+        private final int hash;
+
+        private Key(String outputCollections, String outputPermissions, int outputQuality)
+        {
+            this.outputCollections = String.valueOf(outputCollections);
+            this.outputPermissions = String.valueOf(outputPermissions);
+            this.outputQuality = outputQuality;
+            this.hash = Objects.hash(this.outputCollections, this.outputPermissions, outputQuality);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return outputQuality == that.outputQuality &&
+                outputCollections.equals(that.outputCollections) &&
+                outputPermissions.equals(that.outputPermissions);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    /**
+     * Document metadata that remembers the inputs it was parsed from, so that it can be recorded with spooled and
+     * journaled documents.
+     */
+    static final class MetadataHandle extends DocumentMetadataHandle
+    {
+        private final Key key;
+
+        private MetadataHandle(Key key)
+        {
+            this.key = key;
+            String[] configCollections = key.outputCollections.split(",");
+
+            // Set up list of collections that new docs should be put into
+            if (!configCollections[0].equals("null"))
+            {
+                withCollections(configCollections);
+            }
+            // Set up quality new docs should have
+            setQuality(key.outputQuality);
+
+            // Set up list of permissions that new docs should be granted
+            String[] permissions = key.outputPermissions.split(",");
+            for (int i = 0; i < permissions.length - 1; i++)
+            {
+                String role = permissions[i];
+                String capability = permissions[i + 1];
+                switch (capability.toLowerCase())
+                {
+                    case "read":
+                        getPermissions().add(role, DocumentMetadataHandle.Capability.READ);
+                        break;
+                    case "insert":
+                        getPermissions().add(role, DocumentMetadataHandle.Capability.INSERT);
+                        break;
+                    case "update":
+                        getPermissions().add(role, DocumentMetadataHandle.Capability.UPDATE);
+                        break;
+                    case "execute":
+                        getPermissions().add(role, DocumentMetadataHandle.Capability.EXECUTE);
+                        break;
+                    case "node_update":
+                        getPermissions().add(role, DocumentMetadataHandle.Capability.NODE_UPDATE);
+                        break;
+                    default:
+                        LOGGER.info("No additive permissions assigned");
+                }
+            }
+        }
+
+        /**
+         * Copies already parsed metadata, so that a per-document copy does not parse the collections and permissions
+         * again.
+         */
+        private MetadataHandle(MetadataHandle source)
+        {
+            this.key = source.key;
+            getCollections().addAll(source.getCollections());
+            source.getPermissions().forEach((role, capabilities) ->
+                getPermissions().add(role, capabilities.toArray(new DocumentMetadataHandle.Capability[0])));
+            setQuality(source.getQuality());
+            getMetadataValues().putAll(source.getMetadataValues());
+        }
+
+        String getOutputCollections()
+        {
+            return key.outputCollections;
+        }
+
+        String getOutputPermissions()
+        {
+            return key.outputPermissions;
+        }
+
+        int getOutputQuality()
+        {
+            return key.outputQuality;
+        }
+
+        /**
+         * @return an uncached copy of this metadata that also holds the given metadata value
+         */
+        MetadataHandle withMetadataValue(String name, String value)
+        {
+            MetadataHandle copy = new MetadataHandle(this);
+            copy.getMetadataValues().put(name, value);
+            return copy;
+        }
+
+        void putProperties(Map<String, String> properties)
+        {
+            properties.put(MarkLogicInsertionBatcher.OUTPUT_COLLECTIONS, key.outputCollections);
+            properties.put(MarkLogicInsertionBatcher.OUTPUT_PERMISSIONS, key.outputPermissions);
+            properties.put(MarkLogicInsertionBatcher.OUTPUT_QUALITY, String.valueOf(key.outputQuality));
+            getMetadataValues().forEach((name, value) ->
+                properties.put(MarkLogicInsertionBatcher.METADATA_VALUE_PREFIX + name, value));
+        }
+    }
+}
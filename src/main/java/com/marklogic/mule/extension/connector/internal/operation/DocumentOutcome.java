@@ -0,0 +1,69 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+/**
+ * What became of a single document handed to an insertion batcher.
+ */
+public final class DocumentOutcome
+{
+    public enum Status
+    {
+        /** The batch holding the document was written to MarkLogic. */
+        WRITTEN,
+        /** The document was not written because incremental writes found its content unchanged. */
+        SKIPPED,
+        /** The batch holding the document could not be written, after any retries. */
+        FAILED
+    }
+
+    private final String uri;
+    private final Status status;
+    private final String error;
+    private final long latencyNanos;
+
+    DocumentOutcome(String uri, Status status, String error, long latencyNanos)
+    {
+        this.uri = uri;
+        this.status = status;
+        this.error = error;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public String getUri()
+    {
+        return uri;
+    }
+
+    public Status getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return the message of the failure that stopped the document from being written, or null
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * @return the time from the document being queued to its outcome being known
+     */
+    public long getLatencyNanos()
+    {
+        return latencyNanos;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A directory of documents waiting to be written to MarkLogic, kept in first-in, first-out order. Each document is
+ * stored in its own file, named after a sequence number, holding the URI, a set of string properties describing how
+ * the document should be written, and the content bytes.
+ * <p>
+ * Documents left in the directory by a previous run are picked up when a spool is created on the same directory.
+ */
+public class DocumentSpool
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentSpool.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_SUFFIX = ".spool";
+
+    private final Path directory;
+    private final ConcurrentLinkedQueue<Path> files = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public DocumentSpool(Path directory) throws IOException
+    {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        List<Path> existing = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX)).forEach(existing::add);
+        }
+        Collections.sort(existing);
+        files.addAll(existing);
+        if (!existing.isEmpty()) {
+            String last = existing.get(existing.size() - 1).getFileName().toString();
+            sequence.set(Long.parseLong(last.substring(0, last.length() - FILE_SUFFIX.length())));
+            LOGGER.info("Found {} spooled documents in {}", existing.size(), directory);
+        }
+    }
+
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    public void write(SpooledDocument document) throws IOException
+    {
+        // Write to a temporary file first so that a crash never leaves a partial document behind
+        String name = String.format("%020d", sequence.incrementAndGet());
+        Path temporary = directory.resolve(name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(document.getUri());
+            out.writeInt(document.getProperties().size());
+            for (Map.Entry<String, String> property : document.getProperties().entrySet()) {
+                out.writeUTF(property.getKey());
+                out.writeUTF(property.getValue());
+            }
+            out.writeInt(document.getContent().length);
+            out.write(document.getContent());
+        }
+        Path target = directory.resolve(name + FILE_SUFFIX);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        files.add(target);
+    }
+
+    /**
+     * @return the oldest document in the spool without removing it, or null if the spool is empty
+     */
+    public SpooledDocument peek() throws IOException
+    {
+        Path path = files.peek();
+        return path != null ? read(path) : null;
+    }
+
+    /**
+     * Removes a document previously returned by {@link #peek()}.
+     */
+    public void remove(SpooledDocument document) throws IOException
+    {
+        files.remove(document.getPath());
+        Files.deleteIfExists(document.getPath());
+    }
+
+    public boolean isEmpty()
+    {
+        return files.isEmpty();
+    }
+
+    public int size()
+    {
+        return files.size();
+    }
+
+    public List<Path> list()
+    {
+        return new ArrayList<>(files);
+    }
+
+    public static SpooledDocument read(Path path) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported spool file version " + version + " in " + path);
+            }
+            String uri = in.readUTF();
+            int propertyCount = in.readInt();
+            Map<String, String> properties = new LinkedHashMap<>();
+            for (int i = 0; i < propertyCount; i++) {
+                properties.put(in.readUTF(), in.readUTF());
+            }
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            return new SpooledDocument(path, uri, properties, content);
+        }
+    }
+
+    /**
+     * A document held in a {@link DocumentSpool}.
+     */
+    public static final class SpooledDocument
+    {
+        private final Path path;
+        private final String uri;
+        private final Map<String, String> properties;
+        private final byte[] content;
+
+        public SpooledDocument(String uri, Map<String, String> properties, byte[] content)
+        {
+            this(null, uri, properties, content);
+        }
+
+        private SpooledDocument(Path path, String uri, Map<String, String> properties, byte[] content)
+        {
+            this.path = path;
+            this.uri = uri;
+            this.properties = properties;
+            this.content = content;
+        }
+
+        Path getPath()
+        {
+            return path;
+        }
+
+        public String getUri()
+        {
+            return uri;
+        }
+
+        public Map<String, String> getProperties()
+        {
+            return properties;
+        }
+
+        public byte[] getContent()
+        {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timer wheel shared by the insertion batchers of a connection, so that a connection needs a single
+ * scheduled task, ticking at millisecond granularity, no matter how many batchers it holds or how many flush
+ * deadlines they have pending.
+ * <p>
+ * Timeouts are placed in the bucket of the tick they expire on, and carry the number of further turns of the wheel
+ * they have to wait. Scheduling and cancelling only touch a concurrent queue and volatile flags, apart from the
+ * first timeout, which starts the ticker under a lock; the buckets themselves are only accessed by the ticking thread. Expired tasks are handed to the executor rather than run on the
+ * ticking thread, so a slow task cannot delay other deadlines.
+ */
+public class FlushTimerWheel
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlushTimerWheel.class);
+
+    static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final ScheduledExecutorService executor;
+    private final long tickNanos;
+    private final List<List<Timeout>> buckets;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private long processedTicks;
+    private ScheduledFuture<?> ticker;
+    private boolean closed;
+    // Set once the ticker has been started, or the wheel closed, so that scheduling does not take the lock again
+    private volatile boolean started;
+
+    /**
+     * @param executor drives the wheel and runs expired tasks; when null, timeouts never fire
+     */
+    public FlushTimerWheel(ScheduledExecutorService executor)
+    {
+        this(executor, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    FlushTimerWheel(ScheduledExecutorService executor, long tickMillis, int wheelSize)
+    {
+        this.executor = executor;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Runs the task once the delay has passed, rounded up to the next tick.
+     */
+    public Timeout schedule(Runnable task, long delayMillis)
+    {
+        Timeout timeout = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        if (executor != null) {
+            scheduled.add(timeout);
+            if (!started) {
+                start();
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel; pending timeouts never fire.
+     */
+    public synchronized void close()
+    {
+        closed = true;
+        started = true;
+        if (ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+        scheduled.clear();
+    }
+
+    private synchronized void start()
+    {
+        if (ticker == null && !closed) {
+            long tickMillis = TimeUnit.NANOSECONDS.toMillis(tickNanos);
+            ticker = executor.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+        started = true;
+    }
+
+    /**
+     * Advances the wheel to the current time, processing every tick that has elapsed since the last run in case the
+     * executor fell behind.
+     */
+    void tick()
+    {
+        try {
+            long currentTick = (System.nanoTime() - startNanos) / tickNanos;
+            transferScheduled();
+            while (processedTicks <= currentTick) {
+                List<Timeout> bucket = buckets.get((int) (processedTicks % buckets.size()));
+                for (Iterator<Timeout> it = bucket.iterator(); it.hasNext(); ) {
+                    Timeout timeout = it.next();
+                    if (timeout.cancelled) {
+                        it.remove();
+                    } else if (timeout.remainingRounds <= 0) {
+                        it.remove();
+                        expire(timeout);
+                    } else {
+                        timeout.remainingRounds--;
+                    }
+                }
+                processedTicks++;
+            }
+        } catch (RuntimeException ex) {
+            // An exception would cancel the fixed-rate task and stop every pending flush
+            LOGGER.warn("Unexpected error while advancing flush timer wheel", ex);
+        }
+    }
+
+    private void transferScheduled()
+    {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            // Round up, and never place a timeout in a tick that has already been processed
+            long deadlineTick = Math.max(processedTicks, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+            timeout.remainingRounds = (deadlineTick - processedTicks) / buckets.size();
+            buckets.get((int) (deadlineTick % buckets.size())).add(timeout);
+        }
+    }
+
+    private void expire(Timeout timeout)
+    {
+        try {
+            executor.execute(timeout.task);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Unable to run expired flush timeout", ex);
+        }
+    }
+
+    /**
+     * A pending task; cancelling it is cheap and may be done from any thread.
+     */
+    public static final class Timeout
+    {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineNanos)
+        {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public void cancel()
+        {
+            cancelled = true;
+        }
+
+        public boolean isCancelled()
+        {
+            return cancelled;
+        }
+    }
+}
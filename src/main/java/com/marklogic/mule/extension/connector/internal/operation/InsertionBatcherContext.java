@@ -19,30 +19,38 @@ import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConne
 import java.util.Objects;
 
 /**
- * Captures the inputs and context needed for constructing a MarkLogicInsertionBatcher.
+ * Captures the inputs and context needed for constructing a MarkLogicInsertionBatcher. Document metadata is not part
+ * of it; it is passed along with each document, so documents with different collections, permissions, or quality
+ * share a batcher.
  */
 public class InsertionBatcherContext {
     private MarkLogicConfiguration configuration;
     private MarkLogicConnection connection;
-    private String outputCollections;
-    private String outputPermissions;
-    private int outputQuality;
     private String jobName;
     private String temporalCollection;
     private String serverTransform;
     private String serverTransformParams;
+    // Computed on the first lookup and cleared by every setter; 0 when not yet computed
+    private int hash;
 
     public int computeSignature() {
-        return Objects.hash(configuration,
-            connection,
-            outputCollections,
-            outputPermissions,
-            outputQuality,
-            jobName,
+        return hashCode();
+    }
+
+    /**
+     * Unlike the signature, the name is stable across restarts of the Mule runtime, so it can be used to name files
+     * that belong to the batcher.
+     *
+     * @return a file-system friendly name for the batcher
+     */
+    public String computeName() {
+        int hash = Objects.hash(configuration.getConfigId(),
+            connection.getId(),
             temporalCollection,
             serverTransform,
             serverTransformParams
         );
+        return String.valueOf(jobName).replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + Integer.toHexString(hash);
     }
 
     public MarkLogicConfiguration getConfiguration() {
@@ -51,6 +59,7 @@ public class InsertionBatcherContext {
 
     public void setConfiguration(MarkLogicConfiguration configuration) {
         this.configuration = configuration;
+        this.hash = 0;
     }
 
     public MarkLogicConnection getConnection() {
@@ -59,30 +68,7 @@ public class InsertionBatcherContext {
 
     public void setConnection(MarkLogicConnection connection) {
         this.connection = connection;
-    }
-
-    public String getOutputCollections() {
-        return outputCollections;
-    }
-
-    public void setOutputCollections(String outputCollections) {
-        this.outputCollections = outputCollections;
-    }
-
-    public String getOutputPermissions() {
-        return outputPermissions;
-    }
-
-    public void setOutputPermissions(String outputPermissions) {
-        this.outputPermissions = outputPermissions;
-    }
-
-    public int getOutputQuality() {
-        return outputQuality;
-    }
-
-    public void setOutputQuality(int outputQuality) {
-        this.outputQuality = outputQuality;
+        this.hash = 0;
     }
 
     public String getJobName() {
@@ -91,6 +77,7 @@ public class InsertionBatcherContext {
 
     public void setJobName(String jobName) {
         this.jobName = jobName;
+        this.hash = 0;
     }
 
     public String getTemporalCollection() {
@@ -99,6 +86,7 @@ public class InsertionBatcherContext {
 
     public void setTemporalCollection(String temporalCollection) {
         this.temporalCollection = temporalCollection;
+        this.hash = 0;
     }
 
     public String getServerTransform() {
@@ -107,6 +95,7 @@ public class InsertionBatcherContext {
 
     public void setServerTransform(String serverTransform) {
         this.serverTransform = serverTransform;
+        this.hash = 0;
     }
 
     public String getServerTransformParams() {
@@ -115,5 +104,41 @@ public class InsertionBatcherContext {
 
     public void setServerTransformParams(String serverTransformParams) {
         this.serverTransformParams = serverTransformParams;
+        this.hash = 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        InsertionBatcherContext that = (InsertionBatcherContext) o;
+        // A batcher belongs to one configuration and reports to its broadcaster, so configurations are compared by
+        // identity, like connections, rather than by the values of all their parameters
+        return connection == that.connection &&
+            configuration == that.configuration &&
+            Objects.equals(jobName, that.jobName) &&
+            Objects.equals(temporalCollection, that.temporalCollection) &&
+            Objects.equals(serverTransform, that.serverTransform) &&
+            Objects.equals(serverTransformParams, that.serverTransformParams);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            result = Objects.hash(System.identityHashCode(configuration),
+                System.identityHashCode(connection),
+                jobName,
+                temporalCollection,
+                serverTransform,
+                serverTransformParams
+            );
+            hash = result;
+        }
+        return result;
     }
 }
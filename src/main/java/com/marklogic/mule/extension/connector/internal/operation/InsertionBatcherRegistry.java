@@ -0,0 +1,371 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
+import org.mule.runtime.api.scheduler.SchedulerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Holds the insertion batchers of a connection, keyed by the full {@link InsertionBatcherContext} they were created
+ * for.
+ * <p>
+ * Looking up an existing batcher takes no lock. A new batcher is created outside of the map's locks, so that
+ * starting its job does not hold up callers of other batchers; callers that ask for the same batcher meanwhile wait
+ * for it to be created. Batchers that have not been used for the configured idle timeout are flushed and stopped,
+ * and when the configured maximum number of batchers is reached the least recently used batcher is evicted to make
+ * room. Evicted batchers are flushed on a thread of their own rather than on the caller's. A batcher is only ever
+ * evicted while no caller holds a lease on it, so a caller never writes to a batcher that has been stopped underneath
+ * it.
+ * <p>
+ * When the connection is closed, all batchers are drained in parallel within the configured drain timeout, so that
+ * an unreachable cluster cannot hold up the shutdown of the Mule runtime indefinitely.
+ */
+public class InsertionBatcherRegistry
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(InsertionBatcherRegistry.class);
+
+    // Time allowed for stopping the jobs of batchers once the drain timeout has passed
+    static final long DRAIN_GRACE_MILLIS = 5000;
+
+    // Each batcher is held as a future, which is completed once the caller that added it has created the batcher
+    private final Map<InsertionBatcherContext, CompletableFuture<MarkLogicInsertionBatcher>> batchers = new ConcurrentHashMap<>();
+    // Batchers that have been evicted and are still being flushed, with the number of documents they left unwritten
+    private final Map<MarkLogicInsertionBatcher, CompletableFuture<Long>> evictions = new ConcurrentHashMap<>();
+    private final SchedulerService schedulerService;
+    // Drives the flush timer; obtained by the registry, which stops it once its batchers have been released
+    private final ScheduledExecutorService flushScheduler;
+    private final FlushTimerWheel flushTimer;
+    private FlushTimerWheel.Timeout evictionTimeout;
+    private long idleTimeoutMillis;
+    private volatile long drainTimeoutMillis;
+
+    public InsertionBatcherRegistry(SchedulerService schedulerService)
+    {
+        this.schedulerService = schedulerService;
+        this.flushScheduler = MarkLogicInsertionBatcher.ioScheduler(schedulerService);
+        this.flushTimer = new FlushTimerWheel(flushScheduler);
+    }
+
+    /**
+     * Returns the batcher for the given context, creating it if needed, with a lease that the caller must hand back
+     * through {@link MarkLogicInsertionBatcher#releaseLease()} once it is done adding documents.
+     * <p>
+     * The context must not be modified once it has been passed to this method.
+     */
+    public MarkLogicInsertionBatcher lease(InsertionBatcherContext context)
+    {
+        while (true)
+        {
+            CompletableFuture<MarkLogicInsertionBatcher> entry = batchers.get(context);
+            if (entry == null)
+            {
+                makeRoom(context.getConfiguration());
+                CompletableFuture<MarkLogicInsertionBatcher> created = new CompletableFuture<>();
+                entry = batchers.putIfAbsent(context, created);
+                if (entry == null)
+                {
+                    entry = created;
+                    create(context, created);
+                }
+            }
+            MarkLogicInsertionBatcher batcher = await(entry);
+            if (batcher.tryLease())
+            {
+                return batcher;
+            }
+            // The batcher was evicted between the lookup and the lease; drop it and try again
+            batchers.remove(context, entry);
+        }
+    }
+
+    private void create(InsertionBatcherContext context, CompletableFuture<MarkLogicInsertionBatcher> created)
+    {
+        try
+        {
+            created.complete(createBatcher(context));
+        }
+        catch (RuntimeException | Error ex)
+        {
+            // Let the next caller try again rather than handing every caller the same failure
+            batchers.remove(context, created);
+            created.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    private static MarkLogicInsertionBatcher await(CompletableFuture<MarkLogicInsertionBatcher> entry)
+    {
+        try
+        {
+            return entry.join();
+        }
+        catch (CompletionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new MarkLogicConnectorException("Unable to create insertion batcher", ex.getCause());
+        }
+    }
+
+    /**
+     * @return the batcher of the entry, or null if it is still being created or could not be created
+     */
+    private static MarkLogicInsertionBatcher created(CompletableFuture<MarkLogicInsertionBatcher> entry)
+    {
+        return entry.isDone() && !entry.isCompletedExceptionally() ? entry.join() : null;
+    }
+
+    public int size()
+    {
+        return batchers.size();
+    }
+
+    /**
+     * @return the batchers currently held, in no particular order
+     */
+    public Collection<MarkLogicInsertionBatcher> getBatchers()
+    {
+        List<MarkLogicInsertionBatcher> created = new ArrayList<>(batchers.size());
+        for (CompletableFuture<MarkLogicInsertionBatcher> entry : batchers.values())
+        {
+            MarkLogicInsertionBatcher batcher = created(entry);
+            if (batcher != null)
+            {
+                created.add(batcher);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Flushes and stops the batchers that have not been leased for longer than the idle timeout.
+     *
+     * @return the number of batchers evicted
+     */
+    public int evictIdle(long idleTimeoutMillis)
+    {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        int count = 0;
+        for (Map.Entry<InsertionBatcherContext, CompletableFuture<MarkLogicInsertionBatcher>> entry : batchers.entrySet())
+        {
+            MarkLogicInsertionBatcher batcher = created(entry.getValue());
+            if (batcher != null && batcher.getLastLeasedNanos() - cutoff < 0 && evict(entry.getKey(), entry.getValue()))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drains and stops every batcher, whether or not it is in use, within the configured drain timeout.
+     */
+    public void releaseAll()
+    {
+        releaseAll(drainTimeoutMillis);
+    }
+
+    /**
+     * Drains and stops every batcher, whether or not it is in use. The batchers are drained in parallel, each on its
+     * own thread, since the threads of the Mule runtime's schedulers may already be stopping.
+     * Once they have stopped, the flush timer and the scheduler driving it are stopped as well.
+     *
+     * @param timeoutMillis how long the batchers may take to write their queued documents; 0 waits as long as it takes
+     * @return the number of documents that were not written
+     */
+    public synchronized long releaseAll(long timeoutMillis)
+    {
+        if (evictionTimeout != null)
+        {
+            evictionTimeout.cancel();
+            evictionTimeout = null;
+        }
+        List<CompletableFuture<Long>> drains = new ArrayList<>(evictions.values());
+        for (Map.Entry<InsertionBatcherContext, CompletableFuture<MarkLogicInsertionBatcher>> entry : batchers.entrySet())
+        {
+            batchers.remove(entry.getKey(), entry.getValue());
+            MarkLogicInsertionBatcher batcher;
+            try
+            {
+                // A batcher still being created is drained once it has been
+                batcher = entry.getValue().join();
+            }
+            catch (CompletionException ex)
+            {
+                continue;
+            }
+            batcher.retire(true);
+            drains.add(onOwnThread("marklogic-drain-" + batcher.getJobId(), () -> batcher.drain(timeoutMillis)));
+        }
+        long unwritten = awaitDrains(drains, timeoutMillis);
+        flushTimer.close();
+        if (flushScheduler != null)
+        {
+            flushScheduler.shutdownNow();
+        }
+        return unwritten;
+    }
+
+    private static CompletableFuture<Long> onOwnThread(String name, Supplier<Long> drain)
+    {
+        return CompletableFuture.supplyAsync(drain, task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    private static long awaitDrains(List<CompletableFuture<Long>> drains, long timeoutMillis)
+    {
+        // Stopping a job after the deadline should be quick, but give it some time before giving up on it
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis + DRAIN_GRACE_MILLIS);
+        long unwritten = 0;
+        int stuck = 0;
+        for (CompletableFuture<Long> drain : drains)
+        {
+            try
+            {
+                unwritten += timeoutMillis <= 0 ? drain.get() :
+                    drain.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            catch (TimeoutException ex)
+            {
+                stuck++;
+            }
+            catch (ExecutionException ex)
+            {
+                LOGGER.warn("Unable to drain insertion batcher", ex.getCause());
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                stuck++;
+            }
+        }
+        if (stuck > 0)
+        {
+            LOGGER.error("{} insertion batchers did not stop within {} ms; abandoning them", stuck, timeoutMillis + DRAIN_GRACE_MILLIS);
+        }
+        else if (unwritten > 0)
+        {
+            LOGGER.warn("Insertion batchers stopped with {} documents not written", unwritten);
+        }
+        return unwritten;
+    }
+
+    private MarkLogicInsertionBatcher createBatcher(InsertionBatcherContext context)
+    {
+        drainTimeoutMillis = Math.max(0, context.getConfiguration().getDrainTimeoutMillis());
+        scheduleEviction(context.getConfiguration());
+        return new MarkLogicInsertionBatcher(context, schedulerService, flushTimer);
+    }
+
+    private void makeRoom(MarkLogicConfiguration configuration)
+    {
+        int maxBatchers = configuration.getMaxInsertionBatchers();
+        if (maxBatchers <= 0 || batchers.size() < maxBatchers)
+        {
+            return;
+        }
+        InsertionBatcherContext eldestContext = null;
+        CompletableFuture<MarkLogicInsertionBatcher> eldestEntry = null;
+        MarkLogicInsertionBatcher eldest = null;
+        for (Map.Entry<InsertionBatcherContext, CompletableFuture<MarkLogicInsertionBatcher>> entry : batchers.entrySet())
+        {
+            MarkLogicInsertionBatcher batcher = created(entry.getValue());
+            if (batcher != null && !batcher.isLeased() &&
+                (eldest == null || batcher.getLastLeasedNanos() - eldest.getLastLeasedNanos() < 0))
+            {
+                eldestContext = entry.getKey();
+                eldestEntry = entry.getValue();
+                eldest = batcher;
+            }
+        }
+        if (eldest == null || !evict(eldestContext, eldestEntry))
+        {
+            LOGGER.warn("All {} insertion batchers are in use; exceeding the limit of {}", batchers.size(), maxBatchers);
+        }
+    }
+
+    /**
+     * Retires the batcher of the entry and flushes it on a thread of its own, so that neither the caller that needs
+     * room for a new batcher nor the timer that evicts idle ones waits for its documents to be written.
+     */
+    private boolean evict(InsertionBatcherContext context, CompletableFuture<MarkLogicInsertionBatcher> entry)
+    {
+        MarkLogicInsertionBatcher batcher = created(entry);
+        if (batcher == null || !batcher.retire(false))
+        {
+            return false;
+        }
+        batchers.remove(context, entry);
+        LOGGER.info("Evicting insertion batcher for job {}", batcher.getJobId());
+        CompletableFuture<Long> eviction = onOwnThread("marklogic-evict-" + batcher.getJobId(), () -> batcher.drain(0));
+        evictions.put(batcher, eviction);
+        eviction.whenComplete((unwritten, failure) -> {
+            evictions.remove(batcher);
+            if (failure != null)
+            {
+                LOGGER.warn("Unable to flush evicted insertion batcher for job {}", batcher.getJobId(), failure);
+            }
+        });
+        return true;
+    }
+
+    private synchronized void scheduleEviction(MarkLogicConfiguration configuration)
+    {
+        if (evictionTimeout == null && configuration.getBatcherIdleTimeoutSeconds() > 0)
+        {
+            idleTimeoutMillis = TimeUnit.SECONDS.toMillis(configuration.getBatcherIdleTimeoutSeconds());
+            evictionTimeout = flushTimer.schedule(this::runEviction, Math.max(1000, idleTimeoutMillis / 2));
+        }
+    }
+
+    private void runEviction()
+    {
+        try
+        {
+            evictIdle(idleTimeoutMillis);
+        }
+        catch (RuntimeException ex)
+        {
+            LOGGER.warn("Unable to evict idle insertion batchers", ex);
+        }
+        synchronized (this)
+        {
+            if (evictionTimeout != null && !evictionTimeout.isCancelled())
+            {
+                evictionTimeout = flushTimer.schedule(this::runEviction, Math.max(1000, idleTimeoutMillis / 2));
+            }
+        }
+    }
+}
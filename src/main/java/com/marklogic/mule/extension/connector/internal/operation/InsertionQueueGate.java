@@ -0,0 +1,115 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+/**
+ * Keeps track of how many documents, and how many content bytes, an insertion batcher has handed to DMSDK without
+ * them having been written yet, so that the batcher can apply backpressure when the configured limits are reached.
+ * <p>
+ * A limit of 0 means unbounded. A single document is always admitted when nothing is queued, so a document larger
+ * than the byte limit cannot block forever.
+ */
+class InsertionQueueGate
+{
+    private final long maxDocuments;
+    private final long maxBytes;
+    private long queuedDocuments;
+    private long queuedBytes;
+    private boolean closed;
+
+    InsertionQueueGate(long maxDocuments, long maxBytes)
+    {
+        this.maxDocuments = Math.max(0, maxDocuments);
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    boolean isBounded()
+    {
+        return maxDocuments > 0 || maxBytes > 0;
+    }
+
+    boolean isByteBounded()
+    {
+        return maxBytes > 0;
+    }
+
+    synchronized boolean tryAcquire(long bytes)
+    {
+        if (closed || !hasCapacity(bytes)) {
+            return false;
+        }
+        queuedDocuments++;
+        queuedBytes += bytes;
+        return true;
+    }
+
+    /**
+     * Waits until the document fits in the queue.
+     *
+     * @throws IllegalStateException if the gate is closed while waiting
+     */
+    synchronized void acquire(long bytes) throws InterruptedException
+    {
+        while (!closed && !hasCapacity(bytes)) {
+            wait();
+        }
+        if (closed) {
+            throw new IllegalStateException("Insertion batcher is no longer accepting documents");
+        }
+        queuedDocuments++;
+        queuedBytes += bytes;
+    }
+
+    /**
+     * Counts a document against the queue whether or not it fits.
+     */
+    synchronized void admit(long bytes)
+    {
+        queuedDocuments++;
+        queuedBytes += bytes;
+    }
+
+    synchronized void release(long documents, long bytes)
+    {
+        queuedDocuments = Math.max(0, queuedDocuments - documents);
+        queuedBytes = Math.max(0, queuedBytes - bytes);
+        notifyAll();
+    }
+
+    synchronized void close()
+    {
+        closed = true;
+        notifyAll();
+    }
+
+    synchronized long getQueuedDocuments()
+    {
+        return queuedDocuments;
+    }
+
+    synchronized long getQueuedBytes()
+    {
+        return queuedBytes;
+    }
+
+    private boolean hasCapacity(long bytes)
+    {
+        if (queuedDocuments == 0) {
+            return true;
+        }
+        boolean documentsFit = maxDocuments == 0 || queuedDocuments < maxDocuments;
+        boolean bytesFit = maxBytes == 0 || queuedBytes + bytes <= maxBytes;
+        return documentsFit && bytesFit;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.datamovement.JobReport;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Keeps the DMSDK {@link JobReport} of the most recent export and delete jobs run on a connection, so that they can
+ * be included in the job report once the jobs are done.
+ */
+public class JobReportHistory
+{
+    static final int MAX_JOBS = 100;
+
+    private final Deque<FinishedJob> jobs = new ConcurrentLinkedDeque<>();
+
+    public void record(String kind, String jobId, String jobName, JobReport report)
+    {
+        jobs.addFirst(new FinishedJob(kind, jobId, jobName, report));
+        while (jobs.size() > MAX_JOBS) {
+            jobs.pollLast();
+        }
+    }
+
+    /**
+     * @return the finished jobs of the given kind, most recent first
+     */
+    public List<FinishedJob> getJobs(String kind)
+    {
+        List<FinishedJob> result = new ArrayList<>();
+        for (FinishedJob job : jobs) {
+            if (job.getKind().equals(kind)) {
+                result.add(job);
+            }
+        }
+        return result;
+    }
+
+    public static final class FinishedJob
+    {
+        private final String kind;
+        private final String jobId;
+        private final String jobName;
+        private final JobReport report;
+
+        private FinishedJob(String kind, String jobId, String jobName, JobReport report)
+        {
+            this.kind = kind;
+            this.jobId = jobId;
+            this.jobName = jobName;
+            this.report = report;
+        }
+
+        public String getKind()
+        {
+            return kind;
+        }
+
+        public String getJobId()
+        {
+            return jobId;
+        }
+
+        public String getJobName()
+        {
+            return jobName;
+        }
+
+        public JobReport getReport()
+        {
+            return report;
+        }
+    }
+}
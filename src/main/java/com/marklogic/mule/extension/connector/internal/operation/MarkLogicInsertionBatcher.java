@@ -14,12 +14,29 @@
 package com.marklogic.mule.extension.connector.internal.operation;
 
 import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.ResourceNotFoundException;
 import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.JobReport;
 import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.WriteBatch;
 import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.datamovement.WriteEvent;
+import com.marklogic.client.document.DocumentManager;
+import com.marklogic.client.document.GenericDocumentManager;
 import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.DocumentMetadataHandle;
+import com.marklogic.client.io.Format;
 import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.marker.AbstractWriteHandle;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueueOverflowPolicy;
+import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
+import com.marklogic.mule.extension.connector.internal.error.MarkLogicConnectorSimpleErrorType;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
+import com.marklogic.mule.extension.connector.internal.metrics.ConnectorMetrics;
+import com.marklogic.mule.extension.connector.internal.metrics.MetricsRegistry;
+import com.marklogic.mule.extension.connector.internal.result.resultset.QueryResultCache;
+import org.apache.commons.io.IOUtils;
 import org.mule.runtime.api.scheduler.SchedulerService;
 import org.mule.runtime.extension.api.runtime.operation.Result;
 import org.mule.weave.v2.model.structure.Attributes;
@@ -27,11 +44,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Created by jkrebs on 9/12/2018. Singleton class that manages inserting
@@ -41,12 +77,32 @@ public class MarkLogicInsertionBatcher implements MarkLogicConnectionInvalidatio
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(MarkLogicInsertionBatcher.class);
 
+    // Directory below the configured spool directory that holds the documents of batches that exhausted their retries
+    static final String DEAD_LETTER_DIRECTORY = "dead-letter";
+
+    // Directory below the configured spool directory that holds the journals of insertion batchers
+    static final String JOURNAL_DIRECTORY = "journal";
+
+    // Directory below the configured spool directory that holds the content hash indexes of incremental writes
+    static final String CONTENT_HASH_DIRECTORY = "content-hashes";
+
+    // Properties recorded with spooled documents
+    static final String FORMAT = "format";
+    static final String MIMETYPE = "mimetype";
+    static final String ERROR = "error";
+    static final String OUTPUT_COLLECTIONS = "outputCollections";
+    static final String OUTPUT_PERMISSIONS = "outputPermissions";
+    static final String OUTPUT_QUALITY = "outputQuality";
+    static final String METADATA_VALUE_PREFIX = "metadataValue.";
+    static final String TEMPORAL_COLLECTION = "temporalCollection";
+    static final String SERVER_TRANSFORM = "serverTransform";
+    static final String SERVER_TRANSFORM_PARAMS = "serverTransformParams";
+
+    private static final int RETIRED = Integer.MIN_VALUE;
+
     // a hash used internally to uniquely identify the batcher based on its current configuration
     private final int signature;
 
-    // Object that describes the metadata for documents being inserted
-    private DocumentMetadataHandle metadataHandle;
-
     // How will we know when the resources are ready to be freed up and provide the results report?
     private JobTicket jobTicket;
 
@@ -58,17 +114,126 @@ public class MarkLogicInsertionBatcher implements MarkLogicConnectionInvalidatio
 
     private SchedulerService schedulerService;
 
+    // Bounds the number of documents, and content bytes, handed to DMSDK that have not been written yet
+    private InsertionQueueGate queueGate;
+
+    private MarkLogicQueueOverflowPolicy overflowPolicy;
+
+    // Holds the documents that did not fit in the queue when the SPILL overflow policy is used
+    private DocumentSpool spillSpool;
+
+    // Re-submits failed batches; null when retries are disabled
+    private BatchRetryHandler retryHandler;
+
+    // Receives the documents of batches that could not be written after all retries
+    private DocumentSpool deadLetterSpool;
+
+    // Describes how the documents of this batcher are transformed, so that dead letters can be replayed the same way
+    private Map<String, String> deadLetterProperties;
+
+    // Records the documents handed to DMSDK until their batch completes; null when journaling is disabled
+    private WriteAheadJournal journal;
+
+    // Adjusts the effective batch size and concurrency; null when adaptive batching is disabled
+    private AdaptiveBatchController adaptiveController;
+
+    // Hashes of the content last written to each URI; null unless incremental writes are enabled
+    private ContentHashIndex contentHashIndex;
+
+    // Metadata key content hashes are stored under on the server; null if they are not stored
+    private String contentHashMetadataKey;
+
+    // Reads the content hash stored with a document when the local index has no entry for its URI
+    private GenericDocumentManager documentManager;
+
+    // Content hashes of the documents handed to DMSDK, keyed by the content itself, until their batch is written
+    private final Map<byte[], byte[]> pendingHashes = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final AtomicLong skippedDocuments = new AtomicLong();
+
+    // Notified of the outcome of every document while a write outcome source listens to the configuration
+    private WriteOutcomeBroadcaster outcomeBroadcaster;
+
+    // Documents whose outcome is awaited, keyed by the handle passed to DMSDK, until their batch completes
+    private final Map<AbstractWriteHandle, PendingWrite> pendingWrites = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    // Whether document content is read into memory before it is handed to DMSDK
+    private boolean contentBuffered;
+
+    // Number of callers holding a lease on this batcher; RETIRED once it has been evicted from its registry
+    private final AtomicInteger leases = new AtomicInteger();
+
+    private volatile long lastLeasedNanos = System.nanoTime();
+
+    // Shared by the batchers of a connection to flush documents that have waited for the maximum latency
+    private final FlushTimerWheel flushTimer;
+
+    private long maxFlushLatencyMillis;
+
+    private int batchSize;
+
+    private long maxBatchBytes;
+
+    // Guards the count of documents and bytes in the batch being filled, and the timeout that flushes it
+    private final Object flushLock = new Object();
+
+    private long pendingDocuments;
+
+    private long pendingBytes;
+
+    private FlushTimerWheel.Timeout flushTimeout;
+
+    // Documents handed to DMSDK whose batch has not completed yet
+    private final AtomicLong outstandingDocuments = new AtomicLong();
+
+    // Content bytes of the documents written so far; documents streamed to DMSDK are not counted
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private volatile long lastFlushNanos = System.nanoTime();
+
+    private final String jobName;
+
+    // Latency of each batch, from when DMSDK formed it until it completed
+    private final ConnectorMetrics metrics;
+
+    private final MetricsRegistry metricsRegistry;
+
+    // Cached query results of the connection, which are discarded once documents are written to their collections
+    private final QueryResultCache queryResults;
+
+    // The temporal collection documents are written to, if any; it is not part of their metadata
+    private final String temporalCollection;
+
+    // Set once the batcher starts draining; no more documents are accepted
+    private volatile boolean draining;
+
+    // Set once the drain deadline has passed; batches that fail afterwards are neither retried nor dead-lettered, so
+    // their documents stay in the journal, while batches that succeed are still acknowledged
+    private volatile boolean abandoned;
+
+    // Whether the flush timeout has been brought forward for callers waiting for their documents to be committed
+    private boolean commitRequested;
+
     /**
      * Creates a new insertion batcher.
      *
      * @param context captures inputs and context for the insertion process
+     * @param flushTimer flushes batches that are not filled within the maximum flush latency
      */
-    public MarkLogicInsertionBatcher(InsertionBatcherContext context, SchedulerService schedulerService)
+    public MarkLogicInsertionBatcher(InsertionBatcherContext context, SchedulerService schedulerService, FlushTimerWheel flushTimer)
     {
         this.schedulerService = schedulerService;
+        this.flushTimer = flushTimer;
         this.batcherRequiresReinit = false;
         LOGGER.debug("MarkLogicInsertionBatcher batcherRequiresReinit {}", batcherRequiresReinit);
         this.signature = context.computeSignature();
+        this.outcomeBroadcaster = context.getConfiguration().getWriteOutcomes();
+        this.jobName = context.getJobName();
+        this.metricsRegistry = context.getConnection().getMetrics();
+        this.metrics = metricsRegistry.insertionBatcher(signature);
+        this.queryResults = context.getConnection().getQueryResults();
+        this.temporalCollection = context.getTemporalCollection() != null &&
+            !"null".equalsIgnoreCase(context.getTemporalCollection()) ? context.getTemporalCollection() : null;
 
         // get the object handles needed to talk to MarkLogic
         initializeBatcher(context);
@@ -83,9 +248,39 @@ public class MarkLogicInsertionBatcher implements MarkLogicConnectionInvalidatio
         batcher = dmm.newWriteBatcher();
         batcher.withBatchSize(context.getConfiguration().getBatchSize())
                 .withThreadCount(context.getConfiguration().getThreadCount())
-                .onBatchSuccess(batch -> LOGGER.info("Batcher with signature {} on connection ID {} writes so far: {}",
-                    getSignature(), context.getConnection().getId(), batch.getJobWritesSoFar()))
-                .onBatchFailure((batch, throwable) -> LOGGER.error("Exception thrown by an onBatchSuccess listener", throwable));
+                .onBatchSuccess(batch -> {
+                    LOGGER.info("Batcher with signature {} on connection ID {} writes so far: {}",
+                        getSignature(), context.getConnection().getId(), batch.getJobWritesSoFar());
+                    completeBatch(batch, null);
+                })
+                .onBatchFailure((batch, throwable) -> {
+                    LOGGER.error("Exception thrown by an onBatchSuccess listener", throwable);
+                    if (abandoned) {
+                        // The job is being stopped; keep the documents in the journal rather than retrying them
+                        return;
+                    }
+                    if (adaptiveController != null) {
+                        adaptiveController.recordFailure();
+                    }
+                    if (retryHandler != null) {
+                        retryHandler.onBatchFailure(batch, throwable);
+                    } else {
+                        completeBatch(batch, throwable);
+                    }
+                });
+
+        initializeQueue(context);
+        initializeRetries(context);
+        initializeJournal(context);
+        initializeIncrementalWrites(context);
+        if (context.getConfiguration().isAdaptiveBatching())
+        {
+            this.adaptiveController = new AdaptiveBatchController(context.getConfiguration().getBatchSize(),
+                context.getConfiguration().getThreadCount(), context.getConfiguration().getTargetBatchLatencyMillis());
+        }
+        this.maxBatchBytes = Math.max(0, context.getConfiguration().getMaxBatchBytes());
+        this.contentBuffered = queueGate.isByteBounded() || spillSpool != null || retryHandler != null || journal != null ||
+            maxBatchBytes > 0 || contentHashIndex != null;
 
         // Configure the transform to be used, if any
         // ASSUMPTION: The same transform (or lack thereof) will be used for every document to be inserted during the
@@ -105,100 +300,349 @@ public class MarkLogicInsertionBatcher implements MarkLogicConnectionInvalidatio
             batcher.withTransform(transform.get());
         }
 
-        scheduleThreadToFlushBatcher(context);
+        initializeFlushLatency(context);
 
-        // Set up the metadata to be used for the documents that will be inserted
-        // ASSUMPTION: The same metadata will be used for every document to be inserted during the lifetime of this
-        // object
-        this.metadataHandle = new DocumentMetadataHandle();
-        String[] configCollections = context.getOutputCollections().split(",");
+        // start the batcher job
+        this.jobTicket = dmm.startJob(batcher);
 
-        // Set up list of collections that new docs should be put into
-        if (!configCollections[0].equals("null"))
+        if (journal != null)
         {
-            metadataHandle.withCollections(configCollections);
+            recoverJournal();
         }
-        // Set up quality new docs should have
-        metadataHandle.setQuality(context.getOutputQuality());
+    }
 
-        // Set up list of permissions that new docs should be granted
-        String[] permissions = context.getOutputPermissions().split(",");
-        for (int i = 0; i < permissions.length - 1; i++)
-        {
-            String role = permissions[i];
-            String capability = permissions[i + 1];
-            switch (capability.toLowerCase())
-            {
-                case "read":
-                    metadataHandle.getPermissions().add(role, DocumentMetadataHandle.Capability.READ);
-                    break;
-                case "insert":
-                    metadataHandle.getPermissions().add(role, DocumentMetadataHandle.Capability.INSERT);
-                    break;
-                case "update":
-                    metadataHandle.getPermissions().add(role, DocumentMetadataHandle.Capability.UPDATE);
-                    break;
-                case "execute":
-                    metadataHandle.getPermissions().add(role, DocumentMetadataHandle.Capability.EXECUTE);
-                    break;
-                case "node_update":
-                    metadataHandle.getPermissions().add(role, DocumentMetadataHandle.Capability.NODE_UPDATE);
-                    break;
-                default:
-                    LOGGER.info("No additive permissions assigned");
+    /**
+     * Documents can get "stuck" in the WriteBatcher when not enough are received to meet the batch size, so a
+     * timeout is armed on the shared flush timer whenever a document starts a new batch.
+     *
+     * @param context
+     */
+    private void initializeFlushLatency(InsertionBatcherContext context) {
+        MarkLogicConfiguration configuration = context.getConfiguration();
+        this.batchSize = Math.max(1, configuration.getBatchSize());
+        this.maxFlushLatencyMillis = configuration.getMaxFlushLatencyMillis() > 0 ?
+            configuration.getMaxFlushLatencyMillis() : TimeUnit.SECONDS.toMillis(configuration.getSecondsBeforeFlush());
+        LOGGER.info("Batches will be flushed once their oldest document has waited {} ms", maxFlushLatencyMillis);
+    }
+
+    /**
+     * Keeps track of the documents in the batch being filled, and of the timeout that flushes it.
+     *
+     * @param flushing whether the batcher is about to be flushed anyway
+     */
+    private void trackPending(boolean flushing) {
+        synchronized (flushLock) {
+            pendingDocuments++;
+            if (flushing || pendingDocuments >= batchSize) {
+                // DMSDK sends the batch as soon as it is full
+                lastFlushNanos = System.nanoTime();
+                pendingDocuments = 0;
+                pendingBytes = 0;
+                commitRequested = false;
+                if (flushTimeout != null) {
+                    flushTimeout.cancel();
+                    flushTimeout = null;
+                }
+            } else if (flushTimeout == null) {
+                flushTimeout = flushTimer.schedule(this::flushOnDeadline, maxFlushLatencyMillis);
             }
         }
+    }
 
-        // start the batcher job
-        this.jobTicket = dmm.startJob(batcher);
+    /**
+     * Counts a document's content against the batch being filled.
+     *
+     * @return true if the batch has to be flushed first, because the document would take it past maxBatchBytes
+     */
+    private boolean reserveBatchBytes(long size) {
+        synchronized (flushLock) {
+            boolean full = pendingDocuments > 0 && pendingBytes + size > maxBatchBytes;
+            if (full) {
+                pendingDocuments = 0;
+                pendingBytes = 0;
+                commitRequested = false;
+                if (flushTimeout != null) {
+                    flushTimeout.cancel();
+                    flushTimeout = null;
+                }
+            }
+            pendingBytes += size;
+            return full;
+        }
+    }
+
+    private void flushAsync() {
+        lastFlushNanos = System.nanoTime();
+        batcher.flushAsync();
+    }
+
+    private void armFlushTimeout() {
+        synchronized (flushLock) {
+            if (flushTimeout == null) {
+                flushTimeout = flushTimer.schedule(this::flushOnDeadline, maxFlushLatencyMillis);
+            }
+        }
+    }
+
+    private void flushOnDeadline() {
+        synchronized (flushLock) {
+            pendingDocuments = 0;
+            pendingBytes = 0;
+            commitRequested = false;
+            flushTimeout = null;
+        }
+        if (batcher != null && !batcher.isStopped()) {
+            drainSpilledDocuments();
+            flushAsync();
+        }
+    }
+
+    /**
+     * Brings the flush of the batch being filled forward to the next tick of the flush timer. Callers that ask for a
+     * commit within the same tick share that flush, so documents are still batched under load, while a lone caller
+     * only waits for the tick rather than for the maximum flush latency.
+     */
+    void requestCommit() {
+        synchronized (flushLock) {
+            if (pendingDocuments == 0 || commitRequested) {
+                // The document's batch is already on its way, or a flush has already been brought forward
+                return;
+            }
+            if (flushTimeout != null) {
+                flushTimeout.cancel();
+            }
+            flushTimeout = flushTimer.schedule(this::flushOnDeadline, 0);
+            commitRequested = true;
+        }
     }
 
     /**
-     * Documents can get "stuck" in the WriteBatcher when not enough are received to meet the batch size.
+     * Waits for the outcome of a document added with a completion, requesting a group commit of its batch.
      *
-     * @param context
+     * @throws MarkLogicConnectorException if the document is not written within the timeout, or could not be written
+     */
+    DocumentOutcome awaitCommit(String outURI, CompletableFuture<DocumentOutcome> completion, long timeoutMillis) {
+        requestCommit();
+        DocumentOutcome outcome;
+        try {
+            outcome = completion.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new MarkLogicConnectorException(String.format("Document %s was not committed within %d ms; it remains queued",
+                outURI, timeoutMillis), MarkLogicConnectorSimpleErrorType.COMMIT_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MarkLogicConnectorException("Interrupted while waiting for document " + outURI + " to be committed", ex);
+        } catch (ExecutionException ex) {
+            throw new MarkLogicConnectorException("Unable to write document " + outURI, ex.getCause());
+        }
+        if (DocumentOutcome.Status.FAILED.equals(outcome.getStatus())) {
+            throw new MarkLogicConnectorException("Unable to write document " + outURI + ": " + outcome.getError(),
+                MarkLogicConnectorSimpleErrorType.DATA_MOVEMENT_ERROR);
+        }
+        return outcome;
+    }
+
+    /**
+     * @return the IO scheduler, or null if no usable SchedulerService was injected
      */
-    private void scheduleThreadToFlushBatcher(InsertionBatcherContext context) {
+    public static ScheduledExecutorService ioScheduler(SchedulerService schedulerService) {
         // The service will be null in unit tests that don't inject a SchedulerService.
         // Need this toString check as a bit of a dirty hack to prevent executeDeleteDocsStructuredQueryFlow from
         // failing when it tries to dispose of the Mule context.
-        if (this.schedulerService != null && !this.schedulerService.toString().contains("SimpleUnitTestSupportSchedulerService")) {
-            int secondsBeforeFlush = context.getConfiguration().getSecondsBeforeFlush();
-            LOGGER.info("Scheduling thread to flush batcher; will run every {} seconds", secondsBeforeFlush);
-            // There's no real penalty to calling flushAsync repeatedly; if there are no documents waiting to be
-            // written, the cost of calling flushAsync is negligible.
-            this.schedulerService.ioScheduler().scheduleAtFixedRate(() -> {
-                if (batcher != null && !batcher.isStopped()) {
-                    batcher.flushAsync();
-                }
-            }, secondsBeforeFlush, secondsBeforeFlush, TimeUnit.SECONDS);
+        if (schedulerService != null && !schedulerService.toString().contains("SimpleUnitTestSupportSchedulerService")) {
+            return schedulerService.ioScheduler();
         }
+        return null;
     }
 
     public void release() {
+        drain(0);
+    }
+
+    /**
+     * Stops accepting documents, flushes the documents already queued, waits for their batches to complete, including
+     * the retries of batches that failed, until the timeout passes, and then stops the job. Documents whose batches had not completed by then are reported; they
+     * stay in the journal, if journaling is enabled, and are queued again the next time the batcher is initialized.
+     *
+     * @param timeoutMillis how long to wait for queued documents to be written; 0 waits as long as it takes
+     * @return the number of documents that were not written
+     */
+    public long drain(long timeoutMillis) {
+        draining = true;
+        queueGate.close();
+        synchronized (flushLock) {
+            if (flushTimeout != null) {
+                flushTimeout.cancel();
+                flushTimeout = null;
+            }
+        }
+        if (adaptiveController != null) {
+            adaptiveController.close();
+        }
+        long unwritten = 0;
         if (batcher != null) {
             // finalize all writes
-            batcher.flushAndWait();
+            if (timeoutMillis <= 0) {
+                batcher.flushAndWait();
+                awaitRetries(0);
+            } else if (!awaitDrained(timeoutMillis)) {
+                abandoned = true;
+                unwritten = outstandingDocuments.get();
+                abandonPendingWrites();
+            }
             dmm.stopJob(this.jobTicket);
         }
+        metricsRegistry.unregister(metrics);
+        reportUnwritten(unwritten, timeoutMillis);
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Unable to close journal in {}", journal.getDirectory(), ex);
+            }
+        }
+        if (contentHashIndex != null) {
+            try {
+                contentHashIndex.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Unable to close content hash index {}", contentHashIndex.getFile(), ex);
+            }
+        }
+        return unwritten;
+    }
+
+    private boolean awaitDrained(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        flushAsync();
+        try {
+            return batcher.awaitCompletion(timeoutMillis, TimeUnit.MILLISECONDS) &&
+                awaitRetries(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits for failed batches that are waiting out their retry backoff, which the WriteBatcher does not know about.
+     *
+     * @param timeoutMillis how long to wait; 0 waits as long as it takes
+     */
+    private boolean awaitRetries(long timeoutMillis) {
+        if (retryHandler == null) {
+            return true;
+        }
+        try {
+            return retryHandler.awaitRetries(timeoutMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Fails the documents callers are still waiting for, so that they are not left waiting on a stopped job.
+     */
+    private void abandonPendingWrites() {
+        List<PendingWrite> pending;
+        synchronized (pendingWrites) {
+            pending = new ArrayList<>(pendingWrites.values());
+            pendingWrites.clear();
+        }
+        long now = System.nanoTime();
+        for (PendingWrite write : pending) {
+            if (write.completion != null) {
+                write.completion.complete(new DocumentOutcome(write.uri, DocumentOutcome.Status.FAILED,
+                    "The insertion batcher was stopped before the document was written", now - write.startNanos));
+            }
+        }
+    }
+
+    private void reportUnwritten(long unwritten, long timeoutMillis) {
+        int spilled = spillSpool != null ? spillSpool.size() : 0;
+        if (unwritten > 0) {
+            if (journal != null) {
+                LOGGER.warn("Job {} stopped after {} ms with {} documents not yet written; they remain in journal {}",
+                    getJobId(), timeoutMillis, unwritten, journal.getDirectory());
+            } else {
+                LOGGER.error("Job {} stopped after {} ms with {} documents not yet written; they have been lost, " +
+                    "enable journaling to keep them", getJobId(), timeoutMillis, unwritten);
+            }
+        }
+        if (spilled > 0) {
+            LOGGER.warn("Job {} stopped with {} spilled documents in {}", getJobId(), spilled, spillSpool.getDirectory());
+        }
     }
 
     public int getSignature() {
         return this.signature;
     }
 
+    /**
+     * @return false if the batcher has been retired and must no longer be used
+     */
+    boolean tryLease() {
+        int count;
+        do {
+            count = leases.get();
+            if (count == RETIRED) {
+                return false;
+            }
+        } while (!leases.compareAndSet(count, count + 1));
+        lastLeasedNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Hands back a lease obtained from {@link InsertionBatcherRegistry#lease(InsertionBatcherContext)}.
+     */
+    public void releaseLease() {
+        lastLeasedNanos = System.nanoTime();
+        int count;
+        do {
+            count = leases.get();
+            if (count <= 0) {
+                return;
+            }
+        } while (!leases.compareAndSet(count, count - 1));
+    }
+
+    boolean isLeased() {
+        return leases.get() > 0;
+    }
+
+    long getLastLeasedNanos() {
+        return lastLeasedNanos;
+    }
+
+    /**
+     * Stops the batcher from being leased again.
+     *
+     * @param force retire the batcher even if callers hold a lease on it
+     * @return true if this call retired the batcher
+     */
+    boolean retire(boolean force) {
+        if (force) {
+            return leases.getAndSet(RETIRED) != RETIRED;
+        }
+        return leases.compareAndSet(0, RETIRED);
+    }
+
     /**
      * Actually does the work of passing the document on to DMSDK to do its
      * thing
      *
      * @param outURI -- the URI to be used for the document being inserted
+     * @param metadata -- the collections, permissions, and quality of the document
      * @param documentStream -- the InputStream containing the document to be inserted...comes from Mule
+     * @param completion -- completed with the outcome of the document once it is known; may be null
      * @return jobTicketID
      */
-    InputStream doInsert(String outURI, InputStream documentStream)
+    InputStream doInsert(String outURI, DocumentMetadataCache.MetadataHandle metadata, InputStream documentStream,
+                         CompletableFuture<DocumentOutcome> completion)
     {
         // Add the InputStream to the DMSDK WriteBatcher object
-        batcher.addAs(outURI, metadataHandle, new InputStreamHandle(documentStream));
+        add(outURI, metadata, new InputStreamHandle(documentStream), completion);
 
         // Return the job ticket ID so it can be used to retrieve the document in the future
         String jsonout = "\"" + jobTicket.getJobId() + "\"";
@@ -208,6 +652,705 @@ public class MarkLogicInsertionBatcher implements MarkLogicConnectionInvalidatio
         return new ByteArrayInputStream(jsonout.getBytes(cs));
     }
 
+    /**
+     * Passes every document of a bulk payload on to DMSDK in a single call, so that the per-document cost is limited
+     * to generating its URI and adding it to the WriteBatcher.
+     *
+     * @param documents -- the documents read from the bulk payload
+     * @param metadata -- the collections, permissions, and quality of the documents
+     * @param uriGenerator -- generates the URI of a document, possibly reading its content into memory
+     * @return the number of documents added to the batcher, and the number skipped because they had not changed
+     */
+    BulkInsertCounts doBulkInsert(Iterator<BulkPayloadReader.BulkDocument> documents, DocumentMetadataCache.MetadataHandle metadata,
+                                  Function<BulkPayloadReader.BulkDocument, String> uriGenerator)
+    {
+        long count = 0;
+        long skipped = 0;
+        while (documents.hasNext())
+        {
+            BulkPayloadReader.BulkDocument document = documents.next();
+            String outURI = uriGenerator.apply(document);
+            if (add(outURI, metadata, document.getContent(), null))
+            {
+                count++;
+            }
+            else
+            {
+                skipped++;
+            }
+        }
+        LOGGER.debug("importDocsBulk added {} documents to job {} and skipped {}", count, jobTicket.getJobId(), skipped);
+        return new BulkInsertCounts(count, skipped);
+    }
+
+    /**
+     * @return false if the document was skipped because its content has not changed since it was last written
+     */
+    private boolean add(String outURI, DocumentMetadataCache.MetadataHandle metadata, AbstractWriteHandle content,
+                        CompletableFuture<DocumentOutcome> completion)
+    {
+        if (draining)
+        {
+            throw new MarkLogicConnectorException("The insertion batcher for job " + getJobId() + " is shutting down; document " +
+                outURI + " was not queued");
+        }
+        long startNanos = System.nanoTime();
+        // The content has to be read up front when its size counts against the queue or the batch, when it may have
+        // to be spilled, when it may have to be written again by a retry, when it is journaled, or when it is hashed
+        AbstractWriteHandle handle = contentBuffered ? bufferContent(content) : content;
+        DocumentMetadataCache.MetadataHandle documentMetadata = metadata;
+        if (contentHashIndex != null)
+        {
+            byte[] hash = ContentHashIndex.hash(((BytesHandle) handle).get());
+            if (isUnchanged(outURI, hash))
+            {
+                skippedDocuments.incrementAndGet();
+                reportSkipped(outURI, startNanos, completion);
+                return false;
+            }
+            pendingHashes.put(((BytesHandle) handle).get(), hash);
+            if (contentHashMetadataKey != null)
+            {
+                documentMetadata = metadata.withMetadataValue(contentHashMetadataKey, ContentHashIndex.toHex(hash));
+            }
+        }
+
+        PendingWrite pending = completion != null || outcomeBroadcaster.hasListeners() ?
+            new PendingWrite(outURI, startNanos, completion) : null;
+
+        if (adaptiveController != null)
+        {
+            awaitConcurrency();
+        }
+        if (!queueGate.isBounded())
+        {
+            submit(outURI, documentMetadata, handle, pending);
+            return true;
+        }
+
+        long size = contentLength(handle);
+        if (spillSpool != null)
+        {
+            drainSpilledDocuments();
+        }
+        if ((spillSpool == null || spillSpool.isEmpty()) && queueGate.tryAcquire(size))
+        {
+            submit(outURI, documentMetadata, handle, pending);
+            return true;
+        }
+
+        // The queue is full; make sure the documents it holds are on their way to MarkLogic
+        flushAsync();
+        switch (overflowPolicy)
+        {
+            case FAIL:
+                throw new MarkLogicConnectorException(String.format("Insertion queue is full; %d documents (%d bytes) are waiting to be written",
+                    queueGate.getQueuedDocuments(), queueGate.getQueuedBytes()), MarkLogicConnectorSimpleErrorType.QUEUE_FULL);
+            case SPILL:
+                // A document whose outcome is awaited has to stay in memory, so that its outcome can be tracked
+                if (pending == null)
+                {
+                    spill(outURI, documentMetadata, (BytesHandle) handle);
+                    break;
+                }
+                awaitCapacity(size);
+                submit(outURI, documentMetadata, handle, pending);
+                break;
+            default:
+                awaitCapacity(size);
+                submit(outURI, documentMetadata, handle, pending);
+                break;
+        }
+        return true;
+    }
+
+    private void initializeQueue(InsertionBatcherContext context)
+    {
+        MarkLogicConfiguration configuration = context.getConfiguration();
+        this.queueGate = new InsertionQueueGate(configuration.getMaxQueuedDocuments(), configuration.getMaxQueuedBytes());
+        this.overflowPolicy = configuration.getQueueOverflowPolicy() != null ?
+            configuration.getQueueOverflowPolicy() : MarkLogicQueueOverflowPolicy.BLOCK;
+        if (queueGate.isBounded() && MarkLogicQueueOverflowPolicy.SPILL.equals(overflowPolicy))
+        {
+            if (!MarkLogicConfiguration.isDefined(configuration.getSpoolDirectory()))
+            {
+                throw new MarkLogicConnectorException("The SPILL queue overflow policy requires a spool directory to be configured");
+            }
+            try
+            {
+                spillSpool = new DocumentSpool(Paths.get(configuration.getSpoolDirectory(), "spill", context.computeName()));
+            }
+            catch (IOException ex)
+            {
+                throw new MarkLogicConnectorException("Unable to create spool directory for insertion batcher", ex);
+            }
+        }
+    }
+
+    private void initializeRetries(InsertionBatcherContext context)
+    {
+        MarkLogicConfiguration configuration = context.getConfiguration();
+        if (configuration.getMaxBatchRetries() <= 0)
+        {
+            return;
+        }
+
+        if (MarkLogicConfiguration.isDefined(configuration.getSpoolDirectory()))
+        {
+            try
+            {
+                deadLetterSpool = new DocumentSpool(Paths.get(configuration.getSpoolDirectory(), DEAD_LETTER_DIRECTORY, context.computeName()));
+            }
+            catch (IOException ex)
+            {
+                throw new MarkLogicConnectorException("Unable to create dead-letter directory for insertion batcher", ex);
+            }
+        }
+        else
+        {
+            LOGGER.warn("No spool directory is configured; documents of batches that exhaust their retries will be lost");
+        }
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(TEMPORAL_COLLECTION, String.valueOf(context.getTemporalCollection()));
+        properties.put(SERVER_TRANSFORM, String.valueOf(context.getServerTransform()));
+        properties.put(SERVER_TRANSFORM_PARAMS, String.valueOf(context.getServerTransformParams()));
+        this.deadLetterProperties = Collections.unmodifiableMap(properties);
+
+        this.retryHandler = new BatchRetryHandler(configuration.getMaxBatchRetries(), configuration.getRetryInitialDelayMillis(),
+            configuration.getRetryMaxDelayMillis(), context.getConnection().getIoScheduler(), this::deadLetter);
+    }
+
+    private void deadLetter(WriteBatch batch, Throwable failure)
+    {
+        try
+        {
+            for (WriteEvent event : batch.getItems())
+            {
+                if (deadLetterSpool == null || !(event.getContent() instanceof BytesHandle))
+                {
+                    LOGGER.error("Unable to write document {} to MarkLogic; it has been dropped", event.getTargetUri());
+                    continue;
+                }
+                BytesHandle content = (BytesHandle) event.getContent();
+                Map<String, String> properties = new HashMap<>(deadLetterProperties);
+                if (event.getMetadata() instanceof DocumentMetadataCache.MetadataHandle)
+                {
+                    ((DocumentMetadataCache.MetadataHandle) event.getMetadata()).putProperties(properties);
+                }
+                properties.put(FORMAT, content.getFormat().name());
+                properties.put(ERROR, String.valueOf(failure.getMessage()));
+                deadLetterSpool.write(new DocumentSpool.SpooledDocument(event.getTargetUri(), properties, content.get()));
+            }
+            if (deadLetterSpool != null)
+            {
+                LOGGER.error("Wrote {} documents of batch {} to {}", batch.getItems().length, batch.getJobBatchNumber(),
+                    deadLetterSpool.getDirectory());
+            }
+        }
+        catch (IOException ex)
+        {
+            LOGGER.error("Unable to write dead letters to {}", deadLetterSpool.getDirectory(), ex);
+        }
+        finally
+        {
+            completeBatch(batch, failure);
+        }
+    }
+
+    /**
+     * Queues a document read back from a dead-letter spool.
+     */
+    void doReplay(DocumentSpool.SpooledDocument document)
+    {
+        add(document.getUri(), DocumentMetadataCache.get(document.getProperties()), toContent(document), null);
+    }
+
+    private void initializeJournal(InsertionBatcherContext context)
+    {
+        MarkLogicConfiguration configuration = context.getConfiguration();
+        if (!configuration.isJournalEnabled())
+        {
+            return;
+        }
+        if (!MarkLogicConfiguration.isDefined(configuration.getSpoolDirectory()))
+        {
+            throw new MarkLogicConnectorException("Journaling requires a spool directory to be configured");
+        }
+        try
+        {
+            journal = new WriteAheadJournal(Paths.get(configuration.getSpoolDirectory(), JOURNAL_DIRECTORY, context.computeName()),
+                WriteAheadJournal.DEFAULT_SEGMENT_BYTES);
+        }
+        catch (IOException ex)
+        {
+            throw new MarkLogicConnectorException("Unable to create journal directory for insertion batcher", ex);
+        }
+    }
+
+    private void initializeIncrementalWrites(InsertionBatcherContext context)
+    {
+        MarkLogicConfiguration configuration = context.getConfiguration();
+        if (!configuration.isIncrementalWrites())
+        {
+            return;
+        }
+        if (!MarkLogicConfiguration.isDefined(configuration.getSpoolDirectory()))
+        {
+            throw new MarkLogicConnectorException("Incremental writes require a spool directory to be configured");
+        }
+        try
+        {
+            contentHashIndex = new ContentHashIndex(Paths.get(configuration.getSpoolDirectory(), CONTENT_HASH_DIRECTORY,
+                context.computeName()), ContentHashIndex.DEFAULT_CAPACITY);
+        }
+        catch (IOException ex)
+        {
+            throw new MarkLogicConnectorException("Unable to open content hash index for insertion batcher", ex);
+        }
+        if (MarkLogicConfiguration.isDefined(configuration.getContentHashMetadataKey()))
+        {
+            contentHashMetadataKey = configuration.getContentHashMetadataKey();
+            // Reading the stored hash costs a request per unseen URI on the caller's thread, so it is opt-in
+            if (configuration.isReadServerContentHashes())
+            {
+                documentManager = context.getConnection().getClient().newDocumentManager();
+                documentManager.setMetadataCategories(DocumentManager.Metadata.METADATAVALUES);
+            }
+        }
+    }
+
+    /**
+     * Compares a document's content hash with the one recorded when the URI was last written, falling back to the
+     * hash stored with the document on the server if the local index has never seen the URI and reading server
+     * hashes is enabled.
+     */
+    private boolean isUnchanged(String outURI, byte[] hash)
+    {
+        byte[] known = contentHashIndex.get(outURI);
+        if (known == null && documentManager != null)
+        {
+            known = readServerHash(outURI);
+            if (known != null && Arrays.equals(known, hash))
+            {
+                recordHash(outURI, hash);
+            }
+        }
+        return known != null && Arrays.equals(known, hash);
+    }
+
+    private byte[] readServerHash(String outURI)
+    {
+        try
+        {
+            DocumentMetadataHandle metadata = documentManager.readMetadata(outURI, new DocumentMetadataHandle());
+            return ContentHashIndex.fromHex(metadata.getMetadataValues().get(contentHashMetadataKey));
+        }
+        catch (ResourceNotFoundException ex)
+        {
+            return null;
+        }
+    }
+
+    private void recordHash(String outURI, byte[] hash)
+    {
+        try
+        {
+            contentHashIndex.put(outURI, hash);
+        }
+        catch (IOException ex)
+        {
+            LOGGER.warn("Unable to record content hash of {} in {}", outURI, contentHashIndex.getFile(), ex);
+        }
+    }
+
+    public long getSkippedDocuments()
+    {
+        return skippedDocuments.get();
+    }
+
+    /**
+     * Queues the documents a previous run of this batcher had not finished writing. They count against the queue
+     * limits, but are admitted regardless of the overflow policy.
+     */
+    private void recoverJournal()
+    {
+        try
+        {
+            journal.recover(document -> {
+                queueGate.admit(document.getContent().length);
+                submit(document.getUri(), DocumentMetadataCache.get(document.getProperties()), toContent(document), null);
+            });
+        }
+        catch (IOException ex)
+        {
+            throw new MarkLogicConnectorException("Unable to recover journaled documents from " + journal.getDirectory(), ex);
+        }
+    }
+
+    /**
+     * Hands a document to DMSDK, journaling it first if journaling is enabled.
+     *
+     * @param pending tracks the outcome of the document; may be null
+     */
+    private void submit(String outURI, DocumentMetadataCache.MetadataHandle metadata, AbstractWriteHandle content,
+                        PendingWrite pending)
+    {
+        if (maxBatchBytes > 0 && reserveBatchBytes(contentLength(content)))
+        {
+            flushAsync();
+        }
+
+        AbstractWriteHandle handle = content;
+        if (journal != null)
+        {
+            try
+            {
+                handle = journal.append(outURI, metadata, (BytesHandle) content);
+            }
+            catch (IOException ex)
+            {
+                throw new MarkLogicConnectorException("Unable to journal document " + outURI, ex);
+            }
+        }
+        if (pending != null)
+        {
+            // Registered before the document is added, as its batch may complete before add returns
+            pendingWrites.put(handle, pending);
+        }
+        outstandingDocuments.incrementAndGet();
+        batcher.add(outURI, metadata, handle);
+        boolean flush = adaptiveController != null && adaptiveController.recordAdd();
+        trackPending(flush);
+        if (flush)
+        {
+            flushAsync();
+        }
+    }
+
+    private void awaitConcurrency()
+    {
+        try
+        {
+            adaptiveController.acquire(this::flushAsync);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new MarkLogicConnectorException("Interrupted while waiting for batches in flight to complete", ex);
+        }
+    }
+
+    private void awaitCapacity(long size)
+    {
+        try
+        {
+            queueGate.acquire(size);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new MarkLogicConnectorException("Interrupted while waiting for room in the insertion queue", ex);
+        }
+        catch (IllegalStateException ex)
+        {
+            throw new MarkLogicConnectorException(ex.getMessage(), ex);
+        }
+    }
+
+    private void spill(String outURI, DocumentMetadataCache.MetadataHandle metadata, BytesHandle content)
+    {
+        try
+        {
+            Map<String, String> properties = new HashMap<>();
+            metadata.putProperties(properties);
+            properties.put(FORMAT, content.getFormat().name());
+            spillSpool.write(new DocumentSpool.SpooledDocument(outURI, properties, content.get()));
+        }
+        catch (IOException ex)
+        {
+            throw new MarkLogicConnectorException("Unable to spill document " + outURI + " to " + spillSpool.getDirectory(), ex);
+        }
+    }
+
+    /**
+     * Moves spilled documents, oldest first, back into the WriteBatcher for as long as there is room in the queue.
+     */
+    private void drainSpilledDocuments()
+    {
+        if (spillSpool == null || spillSpool.isEmpty())
+        {
+            return;
+        }
+        synchronized (spillSpool)
+        {
+            try
+            {
+                DocumentSpool.SpooledDocument document = spillSpool.peek();
+                while (document != null && queueGate.tryAcquire(document.getContent().length))
+                {
+                    submit(document.getUri(), DocumentMetadataCache.get(document.getProperties()), toContent(document), null);
+                    spillSpool.remove(document);
+                    document = spillSpool.peek();
+                }
+            }
+            catch (IOException ex)
+            {
+                LOGGER.error("Unable to read spilled documents from {}", spillSpool.getDirectory(), ex);
+            }
+        }
+    }
+
+    /**
+     * Called once a batch has been written, or has finally failed; frees its room in the queue, truncates its
+     * documents from the journal, records the content hashes of its documents if they were written, and reports
+     * their outcomes.
+     *
+     * @param failure why the batch could not be written, or null if it was
+     */
+    private void completeBatch(WriteBatch batch, Throwable failure)
+    {
+        boolean written = failure == null;
+        outstandingDocuments.addAndGet(-batch.getItems().length);
+        metrics.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - batch.getTimestamp().getTimeInMillis()),
+            batch.getItems().length, !written);
+        if (written)
+        {
+            long bytes = 0;
+            for (WriteEvent event : batch.getItems())
+            {
+                bytes += contentLength(event.getContent());
+            }
+            bytesWritten.addAndGet(bytes);
+            invalidateQueryResults(batch);
+        }
+        if (adaptiveController != null)
+        {
+            adaptiveController.recordCompleted(batch.getItems().length);
+        }
+        if (journal != null)
+        {
+            for (WriteEvent event : batch.getItems())
+            {
+                journal.acknowledge((BytesHandle) event.getContent());
+            }
+        }
+        if (contentHashIndex != null)
+        {
+            for (WriteEvent event : batch.getItems())
+            {
+                byte[] hash = event.getContent() instanceof BytesHandle ?
+                    pendingHashes.remove(((BytesHandle) event.getContent()).get()) : null;
+                if (written && hash != null)
+                {
+                    recordHash(event.getTargetUri(), hash);
+                }
+            }
+        }
+        if (!pendingWrites.isEmpty())
+        {
+            reportOutcomes(batch, failure);
+        }
+        if (queueGate.isBounded())
+        {
+            long bytes = 0;
+            if (queueGate.isByteBounded())
+            {
+                for (WriteEvent event : batch.getItems())
+                {
+                    bytes += contentLength(event.getContent());
+                }
+            }
+            queueGate.release(batch.getItems().length, bytes);
+        }
+        if (spillSpool != null && !spillSpool.isEmpty())
+        {
+            // Make sure spilled documents are moved into the room this batch freed up even if no more arrive
+            armFlushTimeout();
+        }
+    }
+
+    /**
+     * Discards the cached query results that may no longer match now that the batch has been written.
+     */
+    private void invalidateQueryResults(WriteBatch batch)
+    {
+        Set<String> collections = new HashSet<>();
+        if (temporalCollection != null)
+        {
+            collections.add(temporalCollection);
+        }
+        DocumentMetadataHandle previous = null;
+        for (WriteEvent event : batch.getItems())
+        {
+            // Documents written with the same metadata share a single handle
+            if (event.getMetadata() instanceof DocumentMetadataHandle && event.getMetadata() != previous)
+            {
+                previous = (DocumentMetadataHandle) event.getMetadata();
+                collections.addAll(previous.getCollections());
+            }
+        }
+        queryResults.invalidate(collections);
+    }
+
+    private void reportOutcomes(WriteBatch batch, Throwable failure)
+    {
+        long now = System.nanoTime();
+        DocumentOutcome.Status status = failure == null ? DocumentOutcome.Status.WRITTEN : DocumentOutcome.Status.FAILED;
+        String error = failure == null ? null : String.valueOf(failure.getMessage());
+        List<DocumentOutcome> outcomes = new ArrayList<>(batch.getItems().length);
+        for (WriteEvent event : batch.getItems())
+        {
+            PendingWrite pending = pendingWrites.remove(event.getContent());
+            if (pending != null)
+            {
+                DocumentOutcome outcome = new DocumentOutcome(event.getTargetUri(), status, error, now - pending.startNanos);
+                if (pending.completion != null)
+                {
+                    pending.completion.complete(outcome);
+                }
+                outcomes.add(outcome);
+            }
+        }
+        if (!outcomes.isEmpty() && outcomeBroadcaster.hasListeners())
+        {
+            outcomeBroadcaster.onWriteOutcomes(getJobId(), batch.getJobBatchNumber(), outcomes);
+        }
+    }
+
+    private void reportSkipped(String outURI, long startNanos, CompletableFuture<DocumentOutcome> completion)
+    {
+        if (completion == null && !outcomeBroadcaster.hasListeners())
+        {
+            return;
+        }
+        DocumentOutcome outcome = new DocumentOutcome(outURI, DocumentOutcome.Status.SKIPPED, null, System.nanoTime() - startNanos);
+        if (completion != null)
+        {
+            completion.complete(outcome);
+        }
+        if (outcomeBroadcaster.hasListeners())
+        {
+            outcomeBroadcaster.onWriteOutcomes(getJobId(), 0, Collections.singletonList(outcome));
+        }
+    }
+
+    private static BytesHandle toContent(DocumentSpool.SpooledDocument document)
+    {
+        Format format = Format.valueOf(document.getProperties().getOrDefault(FORMAT, Format.UNKNOWN.name()));
+        return new BytesHandle(document.getContent()).withFormat(format).withMimetype(document.getProperties().get(MIMETYPE));
+    }
+
+    private static BytesHandle bufferContent(AbstractWriteHandle content)
+    {
+        if (content instanceof BytesHandle)
+        {
+            return (BytesHandle) content;
+        }
+        if (content instanceof InputStreamHandle)
+        {
+            InputStreamHandle streamHandle = (InputStreamHandle) content;
+            try (InputStream stream = streamHandle.get())
+            {
+                return new BytesHandle(IOUtils.toByteArray(stream))
+                    .withFormat(streamHandle.getFormat())
+                    .withMimetype(streamHandle.getMimetype());
+            }
+            catch (IOException ex)
+            {
+                throw new MarkLogicConnectorException("Unable to read document content", ex);
+            }
+        }
+        throw new MarkLogicConnectorException("Unsupported document content: " + content.getClass().getName());
+    }
+
+    private static long contentLength(AbstractWriteHandle content)
+    {
+        return content instanceof BytesHandle ? ((BytesHandle) content).get().length : 0;
+    }
+
+    /**
+     * The number of documents of a bulk payload that were queued, and that were skipped because their content had
+     * not changed.
+     */
+    static final class BulkInsertCounts
+    {
+        private final long documentCount;
+        private final long skippedCount;
+
+        BulkInsertCounts(long documentCount, long skippedCount)
+        {
+            this.documentCount = documentCount;
+            this.skippedCount = skippedCount;
+        }
+
+        long getDocumentCount()
+        {
+            return documentCount;
+        }
+
+        long getSkippedCount()
+        {
+            return skippedCount;
+        }
+    }
+
+    /**
+     * A document whose outcome is awaited by a caller or a write outcome source.
+     */
+    private static final class PendingWrite
+    {
+        private final String uri;
+        private final long startNanos;
+        private final CompletableFuture<DocumentOutcome> completion;
+
+        private PendingWrite(String uri, long startNanos, CompletableFuture<DocumentOutcome> completion)
+        {
+            this.uri = uri;
+            this.startNanos = startNanos;
+            this.completion = completion;
+        }
+    }
+
+    /**
+     * @return the DMSDK report of the job, with its batch and event counts so far
+     */
+    public JobReport getJobReport()
+    {
+        return dmm.getJobReport(jobTicket);
+    }
+
+    public String getJobName()
+    {
+        return jobName;
+    }
+
+    public long getBytesWritten()
+    {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return the number of documents that have been queued but not written yet, including spilled documents
+     */
+    public long getQueueDepth()
+    {
+        return outstandingDocuments.get() + (spillSpool != null ? spillSpool.size() : 0);
+    }
+
+    /**
+     * @return the time since a batch was last sent, either because it was full or because it was flushed
+     */
+    public long getLastFlushAgeMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastFlushNanos);
+    }
+
+    public String getJobId()
+    {
+        return jobTicket.getJobId();
+    }
+
     @Override
     public void markLogicConnectionInvalidated()
     {
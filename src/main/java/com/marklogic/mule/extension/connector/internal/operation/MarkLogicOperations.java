@@ -19,32 +19,41 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.DeleteListener;
+import com.marklogic.client.datamovement.JobReport;
+import com.marklogic.client.datamovement.JobTicket;
 import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.SearchHandle;
-import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.query.QueryManager;
 import com.marklogic.client.query.RawCtsQueryDefinition;
 import com.marklogic.client.query.RawStructuredQueryDefinition;
 import com.marklogic.client.query.StructuredQueryDefinition;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicOutputMode;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicPaginationMode;
 import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueryFormat;
 import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueryStrategy;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicUriStrategy;
 import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
 import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.internal.error.MarkLogicConnectorSimpleErrorType;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
 import com.marklogic.mule.extension.connector.internal.error.provider.MarkLogicExecuteErrorsProvider;
 import com.marklogic.mule.extension.connector.internal.metadata.MarkLogicAnyMetadataResolver;
 import com.marklogic.mule.extension.connector.internal.metadata.MarkLogicSelectMetadataResolver;
+import com.marklogic.mule.extension.connector.internal.metrics.MetricsRegistry;
 import com.marklogic.mule.extension.connector.internal.result.resultset.MarkLogicExportListener;
 import com.marklogic.mule.extension.connector.internal.result.resultset.MarkLogicResultSetCloser;
 import com.marklogic.mule.extension.connector.internal.result.resultset.MarkLogicResultSetIterator;
-import org.apache.commons.jexl3.JexlBuilder;
-import org.apache.commons.jexl3.JexlContext;
-import org.apache.commons.jexl3.JexlEngine;
-import org.apache.commons.jexl3.JexlExpression;
-import org.apache.commons.jexl3.MapContext;
+import com.marklogic.mule.extension.connector.internal.result.resultset.MarkLogicUriCursorIterator;
+import com.marklogic.mule.extension.connector.internal.result.resultset.PageIterator;
+import com.marklogic.mule.extension.connector.internal.result.resultset.QueryResultCache;
+import com.marklogic.mule.extension.connector.internal.result.resultset.RecordExtractor;
+import org.apache.commons.io.IOUtils;
 import org.mule.runtime.api.exception.MuleException;
+import org.mule.runtime.api.metadata.DataType;
+import org.mule.runtime.api.metadata.TypedValue;
 import org.mule.runtime.extension.api.annotation.error.Throws;
 import org.mule.runtime.extension.api.annotation.metadata.OutputResolver;
 import org.mule.runtime.extension.api.annotation.param.Config;
@@ -56,16 +65,28 @@ import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
 import org.mule.runtime.extension.api.annotation.param.display.Example;
 import org.mule.runtime.extension.api.annotation.param.display.Summary;
 import org.mule.runtime.extension.api.annotation.param.display.Text;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
 import org.mule.runtime.extension.api.runtime.streaming.PagingProvider;
+import org.mule.runtime.extension.api.runtime.streaming.StreamingHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.mule.runtime.extension.api.annotation.param.MediaType.ANY;
@@ -86,7 +107,9 @@ public class MarkLogicOperations
 {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MarkLogicOperations.class);
-    private static final String OUTPUT_URI_TEMPLATE = "%s%s%s"; // URI Prefix + basenameUri + URI Suffix
+
+    private static final String EXPORT_JOB = "export";
+    private static final String DELETE_JOB = "delete";
 
     private ObjectMapper jsonFactory = new ObjectMapper();
 
@@ -105,6 +128,8 @@ public class MarkLogicOperations
  * @param temporalCollection The temporal collection imported documents will be loaded into.
  * @param serverTransform The name of a deployed MarkLogic server-side Javascript, XQuery, or XSLT.
  * @param serverTransformParams A comma-separated list of alternating transform parameter names and values.
+ * @param uriStrategy How a document basename is generated: RANDOM_UUID, TIME_ORDERED_UUID, COUNTER, or CONTENT_HASH.
+ * @param waitForCommitMillis When greater than zero, the milliseconds to wait for the document's batch to be written before raising MARKLOGIC:COMMIT_TIMEOUT; concurrent callers are grouped into one batch.
  * @return java.io.InputStream
  * @throws com.marklogic.mule.extension.connector.internal.error.provider.MarkLogicExecuteErrorsProvider
  * @since 1.0.0
@@ -154,35 +179,368 @@ public class MarkLogicOperations
             @Summary("A comma-separated list of alternating transform parameter names and values.")
             @Optional(defaultValue = "null")
             @Example("entity-name,MyEntity,flow-name,loadMyEntity")
-            String serverTransformParams
+            String serverTransformParams,
+            @DisplayName("URI strategy")
+            @Optional(defaultValue = "RANDOM_UUID")
+            @Summary("How a document basename is generated: RANDOM_UUID, TIME_ORDERED_UUID, COUNTER, or CONTENT_HASH.")
+            MarkLogicUriStrategy uriStrategy,
+            @DisplayName("Wait for commit (ms)")
+            @Optional(defaultValue = "0")
+            @Summary("When greater than zero, the milliseconds to wait for the document's batch to be written before raising MARKLOGIC:COMMIT_TIMEOUT; concurrent callers are grouped into one batch.")
+            @Example("50")
+            long waitForCommitMillis
             )
+    {
+        CompletableFuture<DocumentOutcome> completion = waitForCommitMillis > 0 ? new CompletableFuture<>() : null;
+        return insertDocument(markLogicConfiguration, connection, docPayloads, outputCollections, outputPermissions, outputQuality,
+            outputUriPrefix, outputUriSuffix, generateOutputUriBasename, basenameUri, temporalCollection, serverTransform,
+            serverTransformParams, uriStrategy, completion, waitForCommitMillis);
+    }
+
+    @SuppressWarnings("java:S107")
+    private InputStream insertDocument(MarkLogicConfiguration markLogicConfiguration, MarkLogicConnection connection, InputStream docPayloads,
+                                       String outputCollections, String outputPermissions, int outputQuality, String outputUriPrefix,
+                                       String outputUriSuffix, boolean generateOutputUriBasename, String basenameUri, String temporalCollection,
+                                       String serverTransform, String serverTransformParams, MarkLogicUriStrategy uriStrategy,
+                                       CompletableFuture<DocumentOutcome> completion, long waitForCommitMillis)
     {
         // Get a handle to the Insertion batch manager
-        MarkLogicInsertionBatcher batcher = connection.getInsertionBatcher(markLogicConfiguration, outputCollections, outputPermissions, outputQuality, temporalCollection, serverTransform, serverTransformParams);
-        String outURI = generateOutputUri(outputUriPrefix, outputUriSuffix, generateOutputUriBasename, basenameUri);
+        MarkLogicInsertionBatcher batcher = connection.getInsertionBatcher(markLogicConfiguration, temporalCollection, serverTransform, serverTransformParams);
+        DocumentMetadataCache.MetadataHandle metadata = DocumentMetadataCache.get(outputCollections, outputPermissions, outputQuality);
+        long startNanos = System.nanoTime();
+        boolean queued = false;
+        boolean timedOut = false;
+        try {
+            // A content hash needs the whole document before the URI can be generated
+            InputStream payload = docPayloads;
+            byte[] content = null;
+            if (MarkLogicUriStrategy.CONTENT_HASH.equals(uriStrategy)) {
+                content = IOUtils.toByteArray(docPayloads);
+                payload = new ByteArrayInputStream(content);
+            }
+            final byte[] hashedContent = content;
+            String outURI = generateOutputUri(outputUriPrefix, outputUriSuffix, generateOutputUriBasename, basenameUri,
+                uriStrategy, () -> hashedContent);
+
+            // Actually do the insert and return the result
+            InputStream jobTicketId = batcher.doInsert(outURI, metadata, payload, completion);
+            if (waitForCommitMillis > 0) {
+                batcher.awaitCommit(outURI, completion, waitForCommitMillis);
+            } else if (completion != null) {
+                batcher.requestCommit();
+            }
+            queued = true;
+            return jobTicketId;
+        } catch (IOException ex) {
+            throw new MarkLogicConnectorException("Unable to read document payload", ex);
+        } catch (MarkLogicConnectorException ex) {
+            // The document is still queued and may yet be written, so this is not counted as a failure
+            timedOut = MarkLogicConnectorSimpleErrorType.COMMIT_TIMEOUT.equals(ex.getType());
+            throw ex;
+        } finally {
+            batcher.releaseLease();
+            if (timedOut) {
+                connection.getMetrics().operation(MetricsRegistry.Operation.IMPORT_DOCS).recordTimeout(System.nanoTime() - startNanos);
+            } else {
+                recordOperation(connection, MetricsRegistry.Operation.IMPORT_DOCS, startNanos, 1, !queued);
+            }
+        }
+    }
+
+ /**
+ * <p>Loads JSON, XML, text, or binary document content into MarkLogic like Import Docs, but completes only once the DMSDK batch holding the document has been written to MarkLogic, or has failed after any retries, without holding a thread while it waits. Returns a JSON object with the DMSDK <a target="_blank" href="https://docs.marklogic.com/javadoc/client/com/marklogic/client/datamovement/JobTicket.html">JobTicket</a> ID, the URI of the document, its status (WRITTEN, or SKIPPED when incremental writes found it unchanged), and the milliseconds it waited; a failed write raises an error.</p>
+ * @param markLogicConfiguration The MarkLogic configuration details
+ * @param connection The MarkLogic connection details
+ * @param docPayloads The content of the input files to be used for ingestion into MarkLogic.
+ * @param outputCollections A comma-separated list of output collections used during ingestion.
+ * @param outputPermissions A comma-separated list of roles and capabilities used during ingestion.
+ * @param outputQuality A number indicating the quality of the persisted documents.
+ * @param outputUriPrefix The URI prefix, used to prepend and concatenate basenameUri.
+ * @param outputUriSuffix The URI suffix, used to append and concatenate basenameUri.
+ * @param generateOutputUriBasename Creates a document basename based on an auto-generated UUID.
+ * @param basenameUri File basename to be used for persistence in MarkLogic, usually payload-derived.
+ * @param temporalCollection The temporal collection imported documents will be loaded into.
+ * @param serverTransform The name of a deployed MarkLogic server-side Javascript, XQuery, or XSLT.
+ * @param serverTransformParams A comma-separated list of alternating transform parameter names and values.
+ * @param uriStrategy How a document basename is generated: RANDOM_UUID, TIME_ORDERED_UUID, COUNTER, or CONTENT_HASH.
+ * @param callback Completed with the outcome of the document once it is known.
+ * @throws com.marklogic.mule.extension.connector.internal.error.provider.MarkLogicExecuteErrorsProvider
+ * @since 1.3.0
+ */
+    @MediaType(value = APPLICATION_JSON, strict = true)
+    @Throws(MarkLogicExecuteErrorsProvider.class)
+    // sonarqube flags this because of the number of args, but not certain that it can be safely modified without
+    // causing a breaking change
+    @SuppressWarnings("java:S107")
+    @DisplayName("Import Docs (Acknowledged)")
+    public void importDocsAcknowledged(
+            @Config MarkLogicConfiguration markLogicConfiguration,
+            @Connection MarkLogicConnection connection,
+            @DisplayName("Document payload")
+            @Summary("The content of the input files to be used for ingestion into MarkLogic.")
+            @Example("#[payload]")
+            @Content InputStream docPayloads,
+            @Optional(defaultValue = "null")
+            @Summary("A comma-separated list of output collections used during ingestion.")
+            @Example("mulesoft-test") String outputCollections,
+            @Optional(defaultValue = "rest-reader,read,rest-writer,update")
+            @Summary("A comma-separated list of roles and capabilities used during ingestion.")
+            @Example("myRole,read,myRole,update") String outputPermissions,
+            @Optional(defaultValue = "1")
+            @Summary("A number indicating the quality of the persisted documents.")
+            @Example("1") int outputQuality,
+            @Optional(defaultValue = "/")
+            @Summary("The URI prefix, used to prepend and concatenate basenameUri.")
+            @Example("/mulesoft/") String outputUriPrefix,
+            @Optional(defaultValue = "")
+            @Summary("The URI suffix, used to append and concatenate basenameUri.")
+            @Example(".json") String outputUriSuffix,
+            @DisplayName("Generate output URI basename?")
+            @Optional(defaultValue = "true")
+            @Summary("Creates a document basename based on an auto-generated UUID.")
+            @Example("false") boolean generateOutputUriBasename,
+            @DisplayName("Output document basename")
+            @Optional(defaultValue = "null")
+            @Summary("File basename to be used for persistence in MarkLogic, usually payload-derived.")
+            @Example("employee123.json") String basenameUri,
+            @DisplayName("Temporal collection")
+            @Optional(defaultValue = "null")
+            @Summary("The temporal collection imported documents will be loaded into.")
+            @Example("myTemporalCollection") String temporalCollection,
+            @Summary("The name of a deployed MarkLogic server-side Javascript, XQuery, or XSLT.")
+            @Optional(defaultValue = "null")
+            @Example("ml:sjsInputFlow") String serverTransform,
+            @Summary("A comma-separated list of alternating transform parameter names and values.")
+            @Optional(defaultValue = "null")
+            @Example("entity-name,MyEntity,flow-name,loadMyEntity")
+            String serverTransformParams,
+            @DisplayName("URI strategy")
+            @Optional(defaultValue = "RANDOM_UUID")
+            @Summary("How a document basename is generated: RANDOM_UUID, TIME_ORDERED_UUID, COUNTER, or CONTENT_HASH.")
+            MarkLogicUriStrategy uriStrategy,
+            CompletionCallback<InputStream, Void> callback
+            )
+    {
+        CompletableFuture<DocumentOutcome> completion = new CompletableFuture<>();
+        String jobId;
+        try (InputStream jobTicketId = insertDocument(markLogicConfiguration, connection, docPayloads, outputCollections, outputPermissions,
+            outputQuality, outputUriPrefix, outputUriSuffix, generateOutputUriBasename, basenameUri, temporalCollection, serverTransform,
+            serverTransformParams, uriStrategy, completion, 0)) {
+            jobId = jsonFactory.readValue(jobTicketId, String.class);
+        } catch (IOException ex) {
+            throw new MarkLogicConnectorException("Unable to read the job ID of importDocsAcknowledged", ex);
+        }
+
+        completion.whenComplete((outcome, throwable) -> {
+            if (throwable != null) {
+                callback.error(throwable);
+            } else if (DocumentOutcome.Status.FAILED.equals(outcome.getStatus())) {
+                callback.error(new MarkLogicConnectorException("Unable to write document " + outcome.getUri() + ": " + outcome.getError()));
+            } else {
+                ObjectNode rootObj = jsonFactory.createObjectNode();
+                rootObj.put("jobId", jobId);
+                rootObj.put("uri", outcome.getUri());
+                rootObj.put("status", outcome.getStatus().name());
+                rootObj.put("latencyMillis", TimeUnit.NANOSECONDS.toMillis(outcome.getLatencyNanos()));
+                try {
+                    callback.success(Result.<InputStream, Void>builder()
+                        .output(new ByteArrayInputStream(jsonFactory.writeValueAsBytes(rootObj)))
+                        .build());
+                } catch (IOException ex) {
+                    callback.error(new MarkLogicConnectorException("Unable to serialize importDocsAcknowledged outcome", ex));
+                }
+            }
+        });
+    }
+
+ /**
+ * <p>Loads a sequence of JSON, XML, text, or binary documents asynchronously into MarkLogic in a single invocation, via the <a target="_blank" href="https://docs.marklogic.com/guide/java/intro">MarkLogic Java API</a> <a target="_blank" href="https://docs.marklogic.com/guide/java/data-movement">Data Movement SDK (DMSDK)</a>, returning a JSON object with the DMSDK <a target="_blank" href="https://docs.marklogic.com/javadoc/client/com/marklogic/client/datamovement/JobTicket.html">JobTicket</a> ID, the number of documents queued, and the number skipped because incremental writes found their content unchanged.</p>
+ * @param markLogicConfiguration The MarkLogic configuration details
+ * @param connection The MarkLogic connection details
+ * @param docPayloads A list or streaming array of documents, or a stream containing a JSON array or JSON Lines.
+ * @param outputCollections A comma-separated list of output collections used during ingestion.
+ * @param outputPermissions A comma-separated list of roles and capabilities used during ingestion.
+ * @param outputQuality A number indicating the quality of the persisted documents.
+ * @param outputUriPrefix The URI prefix, used to prepend and concatenate each document basename.
+ * @param outputUriSuffix The URI suffix, used to append and concatenate each document basename.
+ * @param uriJsonPointer A JSON pointer selecting the basename of each JSON record; a UUID is generated when absent.
+ * @param temporalCollection The temporal collection imported documents will be loaded into.
+ * @param serverTransform The name of a deployed MarkLogic server-side Javascript, XQuery, or XSLT.
+ * @param serverTransformParams A comma-separated list of alternating transform parameter names and values.
+ * @param uriStrategy How a document basename is generated: RANDOM_UUID, TIME_ORDERED_UUID, COUNTER, or CONTENT_HASH.
+ * @return java.io.InputStream
+ * @throws com.marklogic.mule.extension.connector.internal.error.provider.MarkLogicExecuteErrorsProvider
+ * @since 1.3.0
+ */
+    @MediaType(value = APPLICATION_JSON, strict = true)
+    @Throws(MarkLogicExecuteErrorsProvider.class)
+    @DisplayName("Import Docs (Bulk)")
+    // sonarqube flags this because of the number of args; these mirror the importDocs operation
+    @SuppressWarnings("java:S107")
+    public InputStream importDocsBulk(
+            @Config MarkLogicConfiguration markLogicConfiguration,
+            @Connection MarkLogicConnection connection,
+            @DisplayName("Document payloads")
+            @Summary("A list or streaming array of documents, or a stream containing a JSON array or JSON Lines.")
+            @Example("#[payload]")
+            @Content Object docPayloads,
+            @Optional(defaultValue = "null")
+            @Summary("A comma-separated list of output collections used during ingestion.")
+            @Example("mulesoft-test") String outputCollections,
+            @Optional(defaultValue = "rest-reader,read,rest-writer,update")
+            @Summary("A comma-separated list of roles and capabilities used during ingestion.")
+            @Example("myRole,read,myRole,update") String outputPermissions,
+            @Optional(defaultValue = "1")
+            @Summary("A number indicating the quality of the persisted documents.")
+            @Example("1") int outputQuality,
+            @Optional(defaultValue = "/")
+            @Summary("The URI prefix, used to prepend and concatenate each document basename.")
+            @Example("/mulesoft/") String outputUriPrefix,
+            @Optional(defaultValue = "")
+            @Summary("The URI suffix, used to append and concatenate each document basename.")
+            @Example(".json") String outputUriSuffix,
+            @DisplayName("URI JSON pointer")
+            @Optional
+            @Summary("A JSON pointer selecting the basename of each JSON record; a UUID is generated when absent.")
+            @Example("/employeeId") String uriJsonPointer,
+            @DisplayName("Temporal collection")
+            @Optional(defaultValue = "null")
+            @Summary("The temporal collection imported documents will be loaded into.")
+            @Example("myTemporalCollection") String temporalCollection,
+            @Summary("The name of a deployed MarkLogic server-side Javascript, XQuery, or XSLT.")
+            @Optional(defaultValue = "null")
+            @Example("ml:sjsInputFlow") String serverTransform,
+            @Summary("A comma-separated list of alternating transform parameter names and values.")
+            @Optional(defaultValue = "null")
+            @Example("entity-name,MyEntity,flow-name,loadMyEntity")
+            String serverTransformParams,
+            @DisplayName("URI strategy")
+            @Optional(defaultValue = "RANDOM_UUID")
+            @Summary("How a document basename is generated: RANDOM_UUID, TIME_ORDERED_UUID, COUNTER, or CONTENT_HASH.")
+            MarkLogicUriStrategy uriStrategy
+            )
+    {
+        MarkLogicInsertionBatcher batcher = connection.getInsertionBatcher(markLogicConfiguration, temporalCollection, serverTransform, serverTransformParams);
+        DocumentMetadataCache.MetadataHandle metadata = DocumentMetadataCache.get(outputCollections, outputPermissions, outputQuality);
+        String pointer = MarkLogicConfiguration.isDefined(uriJsonPointer) ? uriJsonPointer : null;
+
+        long startNanos = System.nanoTime();
+        MarkLogicInsertionBatcher.BulkInsertCounts counts = null;
+        try (BulkPayloadReader documents = new BulkPayloadReader(docPayloads, pointer, jsonFactory)) {
+            counts = batcher.doBulkInsert(documents, metadata,
+                document -> generateOutputUri(outputUriPrefix, outputUriSuffix, document.getBasename() == null,
+                    document.getBasename(), uriStrategy, document::bufferContent));
+        } catch (IOException ex) {
+            throw new MarkLogicConnectorException("Unable to close bulk payload", ex);
+        } finally {
+            batcher.releaseLease();
+            recordOperation(connection, MetricsRegistry.Operation.IMPORT_DOCS_BULK, startNanos,
+                counts != null ? counts.getDocumentCount() : 0, counts == null);
+        }
 
-        // Actually do the insert and return the result
-        return batcher.doInsert(outURI, docPayloads);
+        ObjectNode rootObj = jsonFactory.createObjectNode();
+        rootObj.put("jobId", batcher.getJobId());
+        rootObj.put("documentCount", counts.getDocumentCount());
+        rootObj.put("skippedCount", counts.getSkippedCount());
+        try {
+            return new ByteArrayInputStream(jsonFactory.writeValueAsBytes(rootObj));
+        } catch (IOException ex) {
+            throw new MarkLogicConnectorException("Unable to serialize importDocsBulk outcome", ex);
+        }
     }
 
  /**
- * <p>Retrieves a JSON representation of a <a target="_blank" href="https://docs.marklogic.com/guide/java/intro">MarkLogic Java API</a> <a target="_blank" href="https://docs.marklogic.com/guide/java/data-movement">Data Movement SDK (DMSDK)</a> <a target="_blank" href="https://docs.marklogic.com/javadoc/client/com/marklogic/client/datamovement/JobReport.html">JobReport</a> following an importDocs operation.</p>
+ * <p>Re-queues the documents of batches that could not be written after the configured number of retries, which are kept in the dead-letter directory below the configured spool directory. Each document is written with the collections, permissions, quality, temporal collection, and transform it was originally imported with, and is removed from the directory once it has been queued.</p>
+ * @param markLogicConfiguration The MarkLogic configuration details
+ * @param connection The MarkLogic connection details
+ * @return java.io.InputStream
+ * @throws com.marklogic.mule.extension.connector.internal.error.provider.MarkLogicExecuteErrorsProvider
+ * @since 1.3.0
+ */
+    @MediaType(value = APPLICATION_JSON, strict = true)
+    @Throws(MarkLogicExecuteErrorsProvider.class)
+    @DisplayName("Replay Dead Letters")
+    public InputStream replayDeadLetters(
+            @Config MarkLogicConfiguration markLogicConfiguration,
+            @Connection MarkLogicConnection connection
+            )
+    {
+        if (!MarkLogicConfiguration.isDefined(markLogicConfiguration.getSpoolDirectory())) {
+            throw new MarkLogicConnectorException("Replaying dead letters requires a spool directory to be configured");
+        }
+
+        long documentCount = 0;
+        Path deadLetters = Paths.get(markLogicConfiguration.getSpoolDirectory(), MarkLogicInsertionBatcher.DEAD_LETTER_DIRECTORY);
+        if (Files.isDirectory(deadLetters)) {
+            try (DirectoryStream<Path> directories = Files.newDirectoryStream(deadLetters, Files::isDirectory)) {
+                for (Path directory : directories) {
+                    documentCount += replayDeadLetters(markLogicConfiguration, connection, new DocumentSpool(directory));
+                }
+            } catch (IOException ex) {
+                throw new MarkLogicConnectorException("Unable to replay dead letters from " + deadLetters, ex);
+            }
+        }
+        LOGGER.info("replayDeadLetters queued {} documents", documentCount);
+
+        ObjectNode rootObj = jsonFactory.createObjectNode();
+        rootObj.put("documentCount", documentCount);
+        try {
+            return new ByteArrayInputStream(jsonFactory.writeValueAsBytes(rootObj));
+        } catch (IOException ex) {
+            throw new MarkLogicConnectorException("Unable to serialize replayDeadLetters outcome", ex);
+        }
+    }
+
+    private long replayDeadLetters(MarkLogicConfiguration markLogicConfiguration, MarkLogicConnection connection, DocumentSpool spool) throws IOException
+    {
+        long count = 0;
+        for (DocumentSpool.SpooledDocument document = spool.peek(); document != null; document = spool.peek()) {
+            Map<String, String> properties = document.getProperties();
+            MarkLogicInsertionBatcher batcher = connection.getInsertionBatcher(markLogicConfiguration,
+                properties.get(MarkLogicInsertionBatcher.TEMPORAL_COLLECTION),
+                properties.get(MarkLogicInsertionBatcher.SERVER_TRANSFORM),
+                properties.get(MarkLogicInsertionBatcher.SERVER_TRANSFORM_PARAMS));
+            try {
+                batcher.doReplay(document);
+            } finally {
+                batcher.releaseLease();
+            }
+            spool.remove(document);
+            count++;
+        }
+        return count;
+    }
+
+ /**
+ * <p>Retrieves a JSON representation of the <a target="_blank" href="https://docs.marklogic.com/guide/java/intro">MarkLogic Java API</a> <a target="_blank" href="https://docs.marklogic.com/guide/java/data-movement">Data Movement SDK (DMSDK)</a> <a target="_blank" href="https://docs.marklogic.com/javadoc/client/com/marklogic/client/datamovement/JobReport.html">JobReport</a> of every active importDocs job on the connection, and of its most recent exportDocs and deleteDocs jobs. Import jobs also report documents per second, bytes written, queue depth, skipped documents, and the time since their last flush.</p>
+ * @param connection The MarkLogic connection details
  * @throws com.marklogic.mule.extension.connector.internal.error.provider.MarkLogicExecuteErrorsProvider
  * @since 1.0.0
  * @return java.io.InputStream
- * @deprecated Deprecated in v.1.1.1
  */
- @SuppressWarnings("java:S1133")
-    @Deprecated
     @MediaType(value = APPLICATION_JSON, strict = true)
-    @DisplayName("Get Job Report (deprecated)")
-    public InputStream getJobReport()
+    @DisplayName("Get Job Report")
+    public InputStream getJobReport(@Connection MarkLogicConnection connection)
     {
         InputStream targetStream = new ByteArrayInputStream(new byte[0]);
         ObjectNode rootObj = jsonFactory.createObjectNode();
 
-        ArrayNode exports = jsonFactory.createArrayNode();
-        rootObj.set("exportResults", exports);
+        ArrayNode imports = rootObj.putArray("importResults");
+        for (MarkLogicInsertionBatcher batcher : connection.getInsertionBatchers()) {
+            ObjectNode job = putJobReport(imports.addObject(), batcher.getJobId(), batcher.getJobName(), batcher.getJobReport());
+            job.put("bytesWritten", batcher.getBytesWritten());
+            job.put("queueDepth", batcher.getQueueDepth());
+            job.put("skippedDocuments", batcher.getSkippedDocuments());
+            job.put("lastFlushAgeMillis", batcher.getLastFlushAgeMillis());
+        }
+        ArrayNode exports = rootObj.putArray("exportResults");
+        for (JobReportHistory.FinishedJob finished : connection.getJobReportHistory().getJobs(EXPORT_JOB)) {
+            putJobReport(exports.addObject(), finished.getJobId(), finished.getJobName(), finished.getReport());
+        }
+        ArrayNode deletes = rootObj.putArray("deleteResults");
+        for (JobReportHistory.FinishedJob finished : connection.getJobReportHistory().getJobs(DELETE_JOB)) {
+            putJobReport(deletes.addObject(), finished.getJobId(), finished.getJobName(), finished.getReport());
+        }
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("getJobReport outcome: {}", rootObj.asText());
         }
@@ -197,6 +555,31 @@ public class MarkLogicOperations
         return targetStream;
     }
 
+    private static ObjectNode putJobReport(ObjectNode job, String jobId, String jobName, JobReport report)
+    {
+        job.put("jobID", jobId);
+        job.put("jobName", jobName);
+        job.put("jobOutcome", report.isJobComplete() ? (report.getFailureEventsCount() > 0 ? "failed" : "successful") : "running");
+        job.put("successfulBatches", report.getSuccessBatchesCount());
+        job.put("successfulEvents", report.getSuccessEventsCount());
+        job.put("failedBatches", report.getFailureBatchesCount());
+        job.put("failedEvents", report.getFailureEventsCount());
+        job.put("jobReportTime", toIsoString(report.getReportTimestamp()));
+        job.put("jobStartTime", toIsoString(report.getJobStartTime()));
+        job.put("jobEndTime", toIsoString(report.getJobEndTime()));
+
+        Calendar start = report.getJobStartTime();
+        Calendar end = report.isJobComplete() && report.getJobEndTime() != null ? report.getJobEndTime() : report.getReportTimestamp();
+        long elapsedMillis = start != null && end != null ? end.getTimeInMillis() - start.getTimeInMillis() : 0;
+        job.put("documentsPerSecond", elapsedMillis > 0 ? report.getSuccessEventsCount() * 1000.0 / elapsedMillis : 0.0);
+        return job;
+    }
+
+    private static String toIsoString(Calendar calendar)
+    {
+        return calendar != null ? calendar.toInstant().toString() : null;
+    }
+
  /**
  * <p>Echoes the current MarkLogicConnector and MarkLogicConfiguration information.</p>
  * @param configuration The MarkLogic configuration details
@@ -242,26 +625,36 @@ public class MarkLogicOperations
             @Summary("The format of the serialized query.") MarkLogicQueryFormat fmt
     )
     {
-        DatabaseClient client = connection.getClient();
-        QueryManager qm = client.newQueryManager();
-        DataMovementManager dmm = client.newDataMovementManager();
-        QueryDefinition query = getQueryDefinition(qm, queryString, fmt, optionsName, queryStrategy);
-        QueryBatcher batcher = newQueryBatcher(dmm, query, queryStrategy);
-        SearchHandle resultsHandle = qm.search(query, new SearchHandle());
-        
-        if (useConsistentSnapshot)
-        {
-            batcher.withConsistentSnapshot();
+        long startNanos = System.nanoTime();
+        SearchHandle resultsHandle = null;
+        try {
+            DatabaseClient client = connection.getClient();
+            QueryManager qm = client.newQueryManager();
+            DataMovementManager dmm = client.newDataMovementManager();
+            QueryDefinition query = getQueryDefinition(configuration, qm, queryString, fmt, optionsName, queryStrategy);
+            QueryBatcher batcher = newQueryBatcher(dmm, query, queryStrategy);
+            resultsHandle = qm.search(query, new SearchHandle());
+
+            if (useConsistentSnapshot)
+            {
+                batcher.withConsistentSnapshot();
+            }
+
+            batcher.withBatchSize(configuration.getBatchSize())
+                    .withThreadCount(configuration.getThreadCount())
+                    .onUrisReady(new DeleteListener())
+                    .onQueryFailure(throwable -> LOGGER.error("Exception thrown by an onBatchSuccess listener", throwable));
+            JobTicket jobTicket = dmm.startJob(batcher);
+            batcher.awaitCompletion();
+            dmm.stopJob(batcher);
+            connection.getJobReportHistory().record(DELETE_JOB, jobTicket.getJobId(), batcher.getJobName(), dmm.getJobReport(jobTicket));
+        } finally {
+            // Which collections the deleted documents were in is not known
+            connection.getQueryResults().invalidateAll();
+            recordOperation(connection, MetricsRegistry.Operation.DELETE_DOCS, startNanos,
+                resultsHandle != null ? resultsHandle.getTotalResults() : 0, resultsHandle == null);
         }
         
-        batcher.withBatchSize(configuration.getBatchSize())
-                .withThreadCount(configuration.getThreadCount())
-                .onUrisReady(new DeleteListener())
-                .onQueryFailure(throwable -> LOGGER.error("Exception thrown by an onBatchSuccess listener", throwable));
-        dmm.startJob(batcher);
-        batcher.awaitCompletion();
-        dmm.stopJob(batcher);
-        
         InputStream targetStream = new ByteArrayInputStream(new byte[0]);
         ObjectNode rootObj = jsonFactory.createObjectNode();
         rootObj.put("deletionResult", String.format("%d document(s) deleted", resultsHandle.getTotalResults()));
@@ -325,7 +718,8 @@ public class MarkLogicOperations
             @Example("entity-name,MyEntity,flow-name,loadMyEntity") String serverTransformParams
     )
     {
-        return queryDocs(configuration, structuredQuery, optionsName, null, null, structuredQueryStrategy, fmt, serverTransform, serverTransformParams);
+        return queryDocs(configuration, structuredQuery, optionsName, null, null, structuredQueryStrategy, fmt, serverTransform, serverTransformParams, 0,
+            MarkLogicPaginationMode.OFFSET, 0, false, 0, null, MarkLogicOutputMode.PARSED, null);
     }
 
  /**
@@ -339,6 +733,14 @@ public class MarkLogicOperations
  * @param fmt The format of the serialized query.
  * @param serverTransform The name of a deployed MarkLogic server-side Javascript, XQuery, or XSLT.
  * @param serverTransformParams A comma-separated list of alternating transform parameter names and values.
+ * @param prefetchPages Number of pages fetched in the background while the flow processes the current page; 0 fetches each page when it is needed.
+ * @param paginationMode OFFSET searches from the offset of each page, in relevance order; URI_CURSOR continues from the last URI read from each forest, so that deep pages cost the same as the first; PARALLEL does the same for every forest at once.
+ * @param parallelThreads Number of pages read at once in PARALLEL mode, defaults to the connection thread count.
+ * @param orderResults Whether PARALLEL mode returns pages in the order their URIs were read, with each page in URI order, rather than as soon as they are read.
+ * @param cacheTtlSeconds How long pages of results are cached by the connection and returned to identical queries; only supported in OFFSET mode; 0 disables caching.
+ * @param cacheCollections A comma-separated list of the collections read by the query; its cached results are discarded once documents are imported into them through the same connection. When not supplied, any import discards them.
+ * @param outputMode PARSED returns JSON documents as structured values and XML and text as strings; RAW returns every document as an unparsed stream, read from a copy held in memory, with its MIME type.
+ * @param streamingHelper The streaming helper.
  * @return org.mule.runtime.extension.api.runtime.streaming.PagingProvider
  * @throws com.marklogic.mule.extension.connector.internal.error.provider.MarkLogicExecuteErrorsProvider
  * @since 1.1.0
@@ -372,13 +774,47 @@ public class MarkLogicOperations
             @Example("ml:sjsInputFlow") String serverTransform,
             @Summary("A comma-separated list of alternating transform parameter names and values.")
             @Optional(defaultValue = "null")
-            @Example("entity-name,MyEntity,flow-name,loadMyEntity") String serverTransformParams)
+            @Example("entity-name,MyEntity,flow-name,loadMyEntity") String serverTransformParams,
+            @DisplayName("Prefetch Pages")
+            @Optional(defaultValue = "0")
+            @Summary("Number of pages fetched in the background while the flow processes the current page; 0 fetches each page when it is needed.")
+            @Example("2") int prefetchPages,
+            @DisplayName("Pagination Mode")
+            @Optional(defaultValue = "OFFSET")
+            @Summary("OFFSET searches from the offset of each page, in relevance order; URI_CURSOR continues from the last URI read from each forest, so that deep pages cost the same as the first; PARALLEL does the same for every forest at once.")
+            MarkLogicPaginationMode paginationMode,
+            @DisplayName("Parallel Threads")
+            @Optional(defaultValue = "0")
+            @Summary("Number of pages read at once in PARALLEL mode, defaults to the connection thread count.")
+            @Example("8") int parallelThreads,
+            @DisplayName("Order Results")
+            @Optional(defaultValue = "false")
+            @Summary("Whether PARALLEL mode returns pages in the order their URIs were read, with each page in URI order, rather than as soon as they are read.")
+            boolean orderResults,
+            @DisplayName("Cache TTL (seconds)")
+            @Optional(defaultValue = "0")
+            @Summary("How long pages of results are cached by the connection and returned to identical queries; only supported in OFFSET mode; 0 disables caching.")
+            @Example("60") int cacheTtlSeconds,
+            @DisplayName("Cache Collections")
+            @Optional(defaultValue = "null")
+            @Summary("A comma-separated list of the collections read by the query; its cached results are discarded once documents are imported into them through the same connection. When not supplied, any import discards them.")
+            @Example("reference-data") String cacheCollections,
+            @DisplayName("Output Mode")
+            @Optional(defaultValue = "PARSED")
+            @Summary("PARSED returns JSON documents as structured values and XML and text as strings; RAW returns every document as an unparsed stream, read from a copy held in memory, with its MIME type.")
+            MarkLogicOutputMode outputMode,
+            StreamingHelper streamingHelper)
     {
+        if (cacheTtlSeconds > 0 &&
+            (MarkLogicPaginationMode.URI_CURSOR.equals(paginationMode) || MarkLogicPaginationMode.PARALLEL.equals(paginationMode))) {
+            throw new MarkLogicConnectorException("Caching query results is only supported in OFFSET pagination mode; set Cache TTL to 0 to use "
+                + paginationMode + " mode");
+        }
         return new PagingProvider<MarkLogicConnection, Object>()
         {
             private final AtomicBoolean initialised = new AtomicBoolean(false);
             private MarkLogicResultSetCloser resultSetCloser;
-            private MarkLogicResultSetIterator iterator;
+            private PageIterator iterator;
             private long startTime;
 
             @Override
@@ -389,24 +825,54 @@ public class MarkLogicOperations
                     startTime = System.currentTimeMillis();
                     initializeIterator(connection);
                 }
-                return iterator.next();
+                long pageStartNanos = System.nanoTime();
+                List<Object> page = null;
+                try {
+                    page = iterator.next();
+                    return MarkLogicOutputMode.RAW.equals(outputMode) ? toStreams(page, streamingHelper) : page;
+                } finally {
+                    recordOperation(connection, MetricsRegistry.Operation.QUERY_DOCS, pageStartNanos,
+                        page != null ? page.size() : 0, page == null);
+                }
             }
 
             private void initializeIterator(MarkLogicConnection connection) {
                 resultSetCloser = new MarkLogicResultSetCloser(connection);
 
                 String options = MarkLogicConfiguration.isDefined(optionsName) ? optionsName : null;
-                QueryDefinition query = getQueryDefinition(connection.getClient().newQueryManager(),queryString,fmt,options, queryStrategy);
+                QueryDefinition query = getQueryDefinition(configuration, connection.getClient().newQueryManager(),queryString,fmt,options, queryStrategy);
 
                 java.util.Optional<ServerTransform> transform = configuration.generateServerTransform(serverTransform, serverTransformParams);
+                if (MarkLogicPaginationMode.URI_CURSOR.equals(paginationMode) || MarkLogicPaginationMode.PARALLEL.equals(paginationMode))
+                {
+                    boolean parallel = MarkLogicPaginationMode.PARALLEL.equals(paginationMode);
+                    DataMovementManager dmm = connection.getClient().newDataMovementManager();
+                    iterator = new MarkLogicUriCursorIterator(connection, dmm, newQueryBatcher(dmm, query, queryStrategy),
+                        pageLength != null && pageLength > 0 ? pageLength : configuration.getBatchSize(), maxResults, prefetchPages,
+                        parallel ? (parallelThreads > 0 ? parallelThreads : configuration.getThreadCount()) : 1,
+                        !parallel || orderResults, transform.orElse(null), new RecordExtractor(outputMode));
+                    return;
+                }
                 if(transform.isPresent())
                 {
                     query.setResponseTransform(transform.get());
                 }
 
+                QueryResultCache.CachedQuery cachedQuery = null;
+                if (cacheTtlSeconds > 0)
+                {
+                    String cacheKey = String.join("\u0000", String.valueOf(queryStrategy), String.valueOf(fmt), String.valueOf(options),
+                        queryString, String.valueOf(serverTransform), String.valueOf(serverTransformParams), String.valueOf(outputMode));
+                    cachedQuery = connection.getQueryResults().forQuery(cacheKey,
+                        MarkLogicConfiguration.isDefined(cacheCollections) ? Arrays.asList(cacheCollections.split(",")) : null,
+                        TimeUnit.SECONDS.toMillis(cacheTtlSeconds), configuration.getResultCacheMaxEntries(),
+                        configuration.getResultCacheMaxBytes());
+                }
                 iterator = pageLength != null && pageLength < 1 ?
-                    new MarkLogicResultSetIterator(connection, query, configuration.getBatchSize(), maxResults) :
-                    new MarkLogicResultSetIterator(connection, query, pageLength, maxResults);
+                    new MarkLogicResultSetIterator(connection, query, configuration.getBatchSize(), maxResults, prefetchPages, cachedQuery,
+                        new RecordExtractor(outputMode)) :
+                    new MarkLogicResultSetIterator(connection, query, pageLength, maxResults, prefetchPages, cachedQuery,
+                        new RecordExtractor(outputMode));
             }
 
             @Override
@@ -419,6 +885,9 @@ public class MarkLogicOperations
             public void close(MarkLogicConnection connection)
             {
                 LOGGER.info("Finished queryDocs operation; duration: {}", (System.currentTimeMillis() - startTime));
+                if (iterator != null) {
+                    iterator.close();
+                }
                 resultSetCloser.closeResultSets();
             }
 
@@ -441,6 +910,8 @@ public class MarkLogicOperations
  * @param useConsistentSnapshot Whether to use a consistent point-in-time snapshot for operations.
  * @param serverTransform The name of a deployed MarkLogic server-side Javascript, XQuery, or XSLT.
  * @param serverTransformParams A comma-separated list of alternating transform parameter names and values.
+ * @param outputMode PARSED returns JSON documents as structured values and XML and text as strings; RAW returns every document as an unparsed stream, read from a copy held in memory, with its MIME type.
+ * @param streamingHelper The streaming helper.
  * @return org.mule.runtime.extension.api.runtime.streaming.PagingProvider
  * @throws com.marklogic.mule.extension.connector.internal.error.provider.MarkLogicExecuteErrorsProvider
  * @since 1.1.0
@@ -473,7 +944,12 @@ public class MarkLogicOperations
             @Example("ml:sjsInputFlow") String serverTransform,
             @Summary("A comma-separated list of alternating transform parameter names and values.")
             @Optional(defaultValue = "null")
-            @Example("entity-name,MyEntity,flow-name,loadMyEntity") String serverTransformParams
+            @Example("entity-name,MyEntity,flow-name,loadMyEntity") String serverTransformParams,
+            @DisplayName("Output Mode")
+            @Optional(defaultValue = "PARSED")
+            @Summary("PARSED returns JSON documents as structured values and XML and text as strings; RAW returns every document as an unparsed stream, read from a copy held in memory, with its MIME type.")
+            MarkLogicOutputMode outputMode,
+            StreamingHelper streamingHelper
     )
     {
         return new PagingProvider<MarkLogicConnection, Object>() {
@@ -490,10 +966,11 @@ public class MarkLogicOperations
                 QueryManager qm = client.newQueryManager();
                 DataMovementManager dmm = client.newDataMovementManager();
 
-                QueryDefinition query = getQueryDefinition(qm, queryString, fmt, optionsName, queryStrategy);
+                QueryDefinition query = getQueryDefinition(configuration, qm, queryString, fmt, optionsName, queryStrategy);
                 QueryBatcher batcher = newQueryBatcher(dmm, query, queryStrategy);
 
-                MarkLogicExportListener exportListener = new MarkLogicExportListener(maxResults != null ? maxResults : 0);
+                MarkLogicExportListener exportListener = new MarkLogicExportListener(maxResults != null ? maxResults : 0,
+                    new RecordExtractor(outputMode));
 
                 java.util.Optional<ServerTransform> transform = configuration.generateServerTransform(serverTransform, serverTransformParams);
                 if (transform.isPresent()) {
@@ -512,15 +989,25 @@ public class MarkLogicOperations
                         .onQueryFailure(throwable -> LOGGER.error("Exception thrown by an onBatchSuccess listener", throwable));
 
                 long start = System.currentTimeMillis();
-                LOGGER.info("Starting job");
-                dmm.startJob(batcher);
-                batcher.awaitCompletion();
-                dmm.stopJob(batcher);
-                LOGGER.info("Finished job, duration in ms: {}", System.currentTimeMillis() - start);
+                long startNanos = System.nanoTime();
+                boolean failed = true;
+                try {
+                    LOGGER.info("Starting job");
+                    JobTicket jobTicket = dmm.startJob(batcher);
+                    batcher.awaitCompletion();
+                    dmm.stopJob(batcher);
+                    LOGGER.info("Finished job, duration in ms: {}", System.currentTimeMillis() - start);
+                    JobReport jobReport = dmm.getJobReport(jobTicket);
+                    failed = jobReport.getFailureBatchesCount() > 0;
+                    markLogicConnector.getJobReportHistory().record(EXPORT_JOB, jobTicket.getJobId(), batcher.getJobName(), jobReport);
+                } finally {
+                    recordOperation(markLogicConnector, MetricsRegistry.Operation.EXPORT_DOCS, startNanos,
+                        exportListener.getDocs().size(), failed);
+                }
                 pageReturned.set(true);
                 List<Object> docs = exportListener.getDocs();
                 LOGGER.info("Document count: {}", docs.size());
-                return docs;
+                return MarkLogicOutputMode.RAW.equals(outputMode) ? toStreams(docs, streamingHelper) : docs;
             }
 
             @Override
@@ -535,40 +1022,49 @@ public class MarkLogicOperations
         };
     }
 
-    private static String generateOutputUri(String outputUriPrefix, String outputUriSuffix, boolean generateOutputUriBasename, String basenameUri) {
+    private static void recordOperation(MarkLogicConnection connection, MetricsRegistry.Operation operation, long startNanos,
+                                        long documentCount, boolean failed) {
+        connection.getMetrics().operation(operation).record(System.nanoTime() - startNanos, documentCount, failed);
+    }
+
+    /**
+     * Gives each record read in RAW output mode a stream of its own, which Mule can read repeatedly when streaming is
+     * enabled. The streams read from the content already held by the record.
+     */
+    private static List<Object> toStreams(List<Object> records, StreamingHelper streamingHelper)
+    {
+        List<Object> streams = new ArrayList<>(records.size());
+        for (Object record : records) {
+            TypedValue<InputStream> stream = RecordExtractor.toStream(record);
+            if (streamingHelper == null) {
+                streams.add(stream);
+            } else {
+                Object value = streamingHelper.resolveCursorProvider(stream.getValue());
+                DataType dataType = DataType.builder().fromObject(value).mediaType(stream.getDataType().getMediaType()).build();
+                streams.add(new TypedValue<>(value, dataType, stream.getByteLength()));
+            }
+        }
+        return streams;
+    }
+
+    static String generateOutputUri(String outputUriPrefix, String outputUriSuffix, boolean generateOutputUriBasename, String basenameUri,
+                                            MarkLogicUriStrategy uriStrategy, Supplier<byte[]> content) {
         // Determine output URI
-        // If the config tells us to generate a new UUID, do that
+        // If the config tells us to generate a new basename, do that
         String basename = basenameUri;
         if (generateOutputUriBasename || basenameUri == null || basenameUri.equals("null") || basenameUri.length() < 1)
         {
-            basename = UUID.randomUUID().toString();
-            // Also, if the basenameURI is blank for whatever reason, use a new UUID
+            basename = null;
+            // Also, if the basenameURI is blank for whatever reason, generate a new one
         }
         // Assemble the output URI components
-        return String.format(OUTPUT_URI_TEMPLATE, outputUriPrefix, basename, outputUriSuffix);
+        return OutputUriGenerator.generate(uriStrategy, outputUriPrefix, outputUriSuffix, basename, content);
     }
 
-    private QueryDefinition getQueryDefinition(QueryManager queryManager, String queryString, MarkLogicQueryFormat format,
-                                               String optionsName, MarkLogicQueryStrategy strategy) {
-        if (MarkLogicQueryStrategy.RawStructuredQueryDefinition.equals(strategy)) {
-            return queryManager.newRawStructuredQueryDefinition(
-                new StringHandle().withFormat(getClientFormat(format)).with(queryString), optionsName);
-        }
-        if (MarkLogicQueryStrategy.StructuredQueryBuilder.equals(strategy)) {
-            JexlEngine jexl = new JexlBuilder().create();
-            JexlExpression e = jexl.createExpression(queryString);
-            JexlContext jc = new MapContext();
-            if (optionsName == null) {
-                jc.set("sb", queryManager.newStructuredQueryBuilder());
-            }
-            else {
-                jc.set("sb", queryManager.newStructuredQueryBuilder(optionsName));
-            }
-            Object o = e.evaluate(jc);
-            return (StructuredQueryDefinition) o;
-        }
-        // CTS query
-        return queryManager.newRawCtsQueryDefinitionAs(getClientFormat(format), queryString, optionsName);
+    QueryDefinition getQueryDefinition(MarkLogicConfiguration configuration, QueryManager queryManager, String queryString,
+                                       MarkLogicQueryFormat format, String optionsName, MarkLogicQueryStrategy strategy) {
+        return configuration.getQueryDefinitions().newQueryDefinition(queryManager, queryString, getClientFormat(format),
+            optionsName, strategy);
     }
 
     private Format getClientFormat(MarkLogicQueryFormat queryFormat) {
@@ -0,0 +1,130 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicUriStrategy;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Generates document URIs for importDocs. Everything here runs once per document, so the URIs are assembled with a
+ * StringBuilder rather than String.format, and only the RANDOM_UUID strategy touches the shared SecureRandom behind
+ * {@link UUID#randomUUID()}.
+ */
+final class OutputUriGenerator
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(OutputUriGenerator::newSha256);
+
+    // Identifies this JVM, so that counters on different Mule nodes do not produce the same URIs
+    private static final String NODE_ID = hex(sha256(ManagementFactory.getRuntimeMXBean().getName()
+        .getBytes(StandardCharsets.UTF_8)), 4);
+
+    // Starting from the current time keeps the counter increasing across restarts of the node
+    private static final AtomicLong COUNTER = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private OutputUriGenerator()
+    {
+    }
+
+    /**
+     * @param basename the basename to use, or null to generate one
+     * @param content supplies the document content; only called by the CONTENT_HASH strategy
+     */
+    static String generate(MarkLogicUriStrategy strategy, String outputUriPrefix, String outputUriSuffix, String basename,
+                           Supplier<byte[]> content)
+    {
+        String name = basename != null ? basename : generateBasename(strategy, content);
+        return new StringBuilder(outputUriPrefix.length() + name.length() + outputUriSuffix.length())
+            .append(outputUriPrefix).append(name).append(outputUriSuffix).toString();
+    }
+
+    static String generateBasename(MarkLogicUriStrategy strategy, Supplier<byte[]> content)
+    {
+        if (strategy == null) {
+            return UUID.randomUUID().toString();
+        }
+        switch (strategy) {
+            case TIME_ORDERED_UUID:
+                return timeOrderedUuid().toString();
+            case COUNTER:
+                return nextCounterValue();
+            case CONTENT_HASH:
+                return hex(sha256(content.get()), 32);
+            default:
+                return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * Builds a version 7 UUID: 48 bits of Unix time in milliseconds followed by random bits drawn from the calling
+     * thread's random generator.
+     */
+    static UUID timeOrderedUuid()
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (System.currentTimeMillis() << 16) | 0x7000L | (random.nextInt() & 0x0FFFL);
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    static String nextCounterValue()
+    {
+        long value = COUNTER.incrementAndGet();
+        char[] chars = new char[NODE_ID.length() + 17];
+        NODE_ID.getChars(0, NODE_ID.length(), chars, 0);
+        chars[NODE_ID.length()] = '-';
+        // Fixed width, so that the URIs of a node sort in the order they were generated
+        for (int i = chars.length - 1; i > NODE_ID.length(); i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    static byte[] sha256(byte[] content)
+    {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        return digest.digest(content);
+    }
+
+    static String hex(byte[] bytes, int length)
+    {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static MessageDigest newSha256()
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new MarkLogicConnectorException("SHA-256 is not available", ex);
+        }
+    }
+}
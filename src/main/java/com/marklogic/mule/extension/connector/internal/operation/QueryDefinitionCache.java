@@ -0,0 +1,169 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.StructuredQueryDefinition;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueryStrategy;
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.MapContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Keeps the most recently used queries of a configuration in compiled form, so that the queries a flow runs over and
+ * over are not parsed again on every invocation.
+ * <p>
+ * For the StructuredQueryBuilder strategy, the JEXL expression is parsed once by an engine shared by the whole cache.
+ * A new {@link QueryDefinition} is still built from the compiled query on every call, because operations go on to
+ * modify the definition they are given, e.g. by setting a response transform.
+ */
+public class QueryDefinitionCache
+{
+    private final JexlEngine jexl = new JexlBuilder().cache(0).create();
+    private final IntSupplier maxSize;
+    private final Map<Key, CompiledQuery> queries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the number of compiled queries to keep, read whenever one is added; 0 or less keeps none
+     */
+    public QueryDefinitionCache(IntSupplier maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return a new query definition for the query, compiled now unless it was compiled recently
+     */
+    public QueryDefinition newQueryDefinition(QueryManager queryManager, String queryString, Format format, String optionsName,
+                                              MarkLogicQueryStrategy strategy)
+    {
+        Key key = new Key(strategy, format, optionsName, queryString);
+        CompiledQuery compiled;
+        synchronized (queries) {
+            compiled = queries.get(key);
+        }
+        if (compiled != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            compiled = compile(key);
+            int size = maxSize.getAsInt();
+            if (size > 0) {
+                synchronized (queries) {
+                    queries.put(key, compiled);
+                    while (queries.size() > size) {
+                        queries.remove(queries.keySet().iterator().next());
+                    }
+                }
+            }
+        }
+        return compiled.newQueryDefinition(queryManager);
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    public int size()
+    {
+        synchronized (queries) {
+            return queries.size();
+        }
+    }
+
+    private CompiledQuery compile(Key key)
+    {
+        if (MarkLogicQueryStrategy.RawStructuredQueryDefinition.equals(key.strategy)) {
+            return queryManager -> queryManager.newRawStructuredQueryDefinition(
+                new StringHandle().withFormat(key.format).with(key.queryString), key.optionsName);
+        }
+        if (MarkLogicQueryStrategy.StructuredQueryBuilder.equals(key.strategy)) {
+            JexlExpression expression = jexl.createExpression(key.queryString);
+            return queryManager -> {
+                JexlContext context = new MapContext();
+                if (key.optionsName == null) {
+                    context.set("sb", queryManager.newStructuredQueryBuilder());
+                } else {
+                    context.set("sb", queryManager.newStructuredQueryBuilder(key.optionsName));
+                }
+                return (StructuredQueryDefinition) expression.evaluate(context);
+            };
+        }
+        // CTS query
+        return queryManager -> queryManager.newRawCtsQueryDefinitionAs(key.format, key.queryString, key.optionsName);
+    }
+
+    @FunctionalInterface
+    private interface CompiledQuery
+    {
+        QueryDefinition newQueryDefinition(QueryManager queryManager);
+    }
+
+    private static final class Key
+    {
+        private final MarkLogicQueryStrategy strategy;
+        private final Format format;
+        private final String optionsName;
+        private final String queryString;
+        private final int hash;
+
+        Key(MarkLogicQueryStrategy strategy, Format format, String optionsName, String queryString)
+        {
+            this.strategy = strategy;
+            this.format = format;
+            this.optionsName = optionsName;
+            this.queryString = queryString;
+            this.hash = Objects.hash(strategy, format, optionsName, queryString);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return strategy == that.strategy && format == that.format && Objects.equals(optionsName, that.optionsName) &&
+                Objects.equals(queryString, that.queryString);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.io.BytesHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * An append-only journal of the documents an insertion batcher has handed to DMSDK, so that documents still held in
+ * DMSDK's in-memory batches when the Mule runtime stops can be queued again the next time the batcher is initialized.
+ * <p>
+ * The journal is a sequence of memory-mapped segment files. Each record starts with a state byte that is set to
+ * QUEUED only once the rest of the record has been written, and that is flipped to ACKNOWLEDGED in place once the
+ * batch holding the document is done with. A segment is deleted once a newer segment has been started and all of its
+ * records are acknowledged. Records live in the page cache as soon as they are written, so they survive the JVM
+ * going down; segments are only forced to disk when they are sealed, so an operating system crash may lose the most
+ * recent records.
+ */
+class WriteAheadJournal implements Closeable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadJournal.class);
+
+    static final int DEFAULT_SEGMENT_BYTES = 32 * 1024 * 1024;
+
+    private static final String FILE_SUFFIX = ".journal";
+    private static final byte END = 0;
+    private static final byte QUEUED = 1;
+    private static final byte ACKNOWLEDGED = 2;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final List<Path> previousSegments = new ArrayList<>();
+    private long sequence;
+    private Segment active;
+
+    WriteAheadJournal(Path directory, int segmentBytes) throws IOException
+    {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX)).forEach(previousSegments::add);
+        }
+        Collections.sort(previousSegments);
+        if (!previousSegments.isEmpty()) {
+            String last = previousSegments.get(previousSegments.size() - 1).getFileName().toString();
+            sequence = Long.parseLong(last.substring(0, last.length() - FILE_SUFFIX.length()));
+        }
+    }
+
+    Path getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Hands every unacknowledged record left behind by a previous run to the consumer, oldest first, deleting each
+     * segment once its records have been handed over. The consumer is expected to append the documents again.
+     *
+     * @return the number of documents recovered
+     */
+    int recover(Consumer<DocumentSpool.SpooledDocument> consumer) throws IOException
+    {
+        int count = 0;
+        for (Path path : previousSegments) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() > 0) {
+                    byte state = buffer.get();
+                    if (state == END) {
+                        break;
+                    }
+                    DocumentSpool.SpooledDocument document = readRecord(buffer);
+                    if (document == null) {
+                        LOGGER.warn("Ignoring truncated record at offset {} of {}", buffer.position(), path);
+                        break;
+                    }
+                    if (state == QUEUED) {
+                        consumer.accept(document);
+                        count++;
+                    }
+                }
+            }
+            Files.deleteIfExists(path);
+        }
+        if (count > 0) {
+            LOGGER.info("Recovered {} unacknowledged documents from {}", count, directory);
+        }
+        previousSegments.clear();
+        return count;
+    }
+
+    /**
+     * Records a document and returns a copy of its content that can be passed to {@link #acknowledge(BytesHandle)}
+     * once the document has been written.
+     */
+    synchronized JournaledBytesHandle append(String uri, DocumentMetadataCache.MetadataHandle metadata, BytesHandle content) throws IOException
+    {
+        byte[] uriBytes = uri.getBytes(StandardCharsets.UTF_8);
+        byte[] collectionsBytes = metadata.getOutputCollections().getBytes(StandardCharsets.UTF_8);
+        byte[] permissionsBytes = metadata.getOutputPermissions().getBytes(StandardCharsets.UTF_8);
+        byte[] formatBytes = content.getFormat().name().getBytes(StandardCharsets.UTF_8);
+        byte[] mimetypeBytes = content.getMimetype() != null ? content.getMimetype().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        List<byte[]> metadataValueBytes = new ArrayList<>();
+        int metadataValuesLength = 4;
+        for (Map.Entry<String, String> metadataValue : metadata.getMetadataValues().entrySet()) {
+            byte[] name = metadataValue.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = metadataValue.getValue().getBytes(StandardCharsets.UTF_8);
+            metadataValueBytes.add(name);
+            metadataValueBytes.add(value);
+            metadataValuesLength += 4 + name.length + 4 + value.length;
+        }
+        byte[] bytes = content.get();
+        int length = 1 + 4 + uriBytes.length + 4 + collectionsBytes.length + 4 + permissionsBytes.length + 4 +
+            metadataValuesLength + 4 + formatBytes.length + 4 + mimetypeBytes.length + 4 + bytes.length;
+
+        if (active == null || active.buffer.capacity() - active.position < length) {
+            roll(length);
+        }
+        Segment segment = active;
+        int offset = segment.position;
+        ByteBuffer record = segment.buffer.duplicate();
+        record.position(offset + 1);
+        putBytes(record, uriBytes);
+        putBytes(record, collectionsBytes);
+        putBytes(record, permissionsBytes);
+        record.putInt(metadata.getOutputQuality());
+        record.putInt(metadataValueBytes.size() / 2);
+        for (byte[] metadataValue : metadataValueBytes) {
+            putBytes(record, metadataValue);
+        }
+        putBytes(record, formatBytes);
+        putBytes(record, mimetypeBytes);
+        putBytes(record, bytes);
+        // Only now does the record become visible to recovery
+        segment.buffer.put(offset, QUEUED);
+        segment.position += length;
+        segment.outstanding.incrementAndGet();
+
+        JournaledBytesHandle handle = new JournaledBytesHandle(bytes, segment, offset);
+        handle.setFormat(content.getFormat());
+        handle.setMimetype(content.getMimetype());
+        return handle;
+    }
+
+    /**
+     * Marks a document as done with; does nothing for content that was not returned by {@link #append}.
+     */
+    void acknowledge(BytesHandle content)
+    {
+        if (content instanceof JournaledBytesHandle) {
+            JournaledBytesHandle handle = (JournaledBytesHandle) content;
+            Segment segment = handle.segment;
+            segment.buffer.put(handle.offset, ACKNOWLEDGED);
+            if (segment.outstanding.decrementAndGet() == 0 && segment.sealed) {
+                delete(segment);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (active != null) {
+            Segment segment = active;
+            active = null;
+            segment.sealed = true;
+            if (segment.outstanding.get() == 0) {
+                delete(segment);
+            } else {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        }
+    }
+
+    private void roll(int length) throws IOException
+    {
+        if (active != null) {
+            Segment previous = active;
+            previous.buffer.force();
+            previous.sealed = true;
+            if (previous.outstanding.get() == 0) {
+                delete(previous);
+            }
+        }
+        Path path = directory.resolve(String.format("%020d%s", ++sequence, FILE_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        active = new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, length + 1)));
+    }
+
+    private static void delete(Segment segment)
+    {
+        if (segment.deleted.compareAndSet(false, true)) {
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException ex) {
+                LOGGER.warn("Unable to delete journal segment {}", segment.path, ex);
+            }
+        }
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes)
+    {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static DocumentSpool.SpooledDocument readRecord(ByteBuffer buffer)
+    {
+        byte[] uri = getBytes(buffer);
+        byte[] collections = uri != null ? getBytes(buffer) : null;
+        byte[] permissions = collections != null ? getBytes(buffer) : null;
+        if (permissions == null || buffer.remaining() < 4) {
+            return null;
+        }
+        int quality = buffer.getInt();
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        Map<String, String> properties = new HashMap<>();
+        int metadataValues = buffer.getInt();
+        for (int i = 0; i < metadataValues; i++) {
+            byte[] name = getBytes(buffer);
+            byte[] value = name != null ? getBytes(buffer) : null;
+            if (value == null) {
+                return null;
+            }
+            properties.put(MarkLogicInsertionBatcher.METADATA_VALUE_PREFIX + new String(name, StandardCharsets.UTF_8),
+                new String(value, StandardCharsets.UTF_8));
+        }
+        byte[] format = getBytes(buffer);
+        byte[] mimetype = format != null ? getBytes(buffer) : null;
+        byte[] content = mimetype != null ? getBytes(buffer) : null;
+        if (content == null) {
+            return null;
+        }
+        properties.put(MarkLogicInsertionBatcher.OUTPUT_COLLECTIONS, new String(collections, StandardCharsets.UTF_8));
+        properties.put(MarkLogicInsertionBatcher.OUTPUT_PERMISSIONS, new String(permissions, StandardCharsets.UTF_8));
+        properties.put(MarkLogicInsertionBatcher.OUTPUT_QUALITY, String.valueOf(quality));
+        properties.put(MarkLogicInsertionBatcher.FORMAT, new String(format, StandardCharsets.UTF_8));
+        if (mimetype.length > 0) {
+            properties.put(MarkLogicInsertionBatcher.MIMETYPE, new String(mimetype, StandardCharsets.UTF_8));
+        }
+        return new DocumentSpool.SpooledDocument(new String(uri, StandardCharsets.UTF_8), properties, content);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer)
+    {
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static final class Segment
+    {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicBoolean deleted = new AtomicBoolean();
+        private volatile boolean sealed;
+        private int position;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer)
+        {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Document content that remembers where it was recorded in the journal.
+     */
+    static final class JournaledBytesHandle extends BytesHandle
+    {
+        private final Segment segment;
+        private final int offset;
+
+        private JournaledBytesHandle(byte[] content, Segment segment, int offset)
+        {
+            super(content);
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+}
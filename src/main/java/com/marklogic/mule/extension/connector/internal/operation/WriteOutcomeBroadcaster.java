@@ -0,0 +1,59 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Hands the write outcomes of every insertion batcher of a configuration to the listeners registered with it,
+ * typically write outcome sources. Insertion batchers only track per-document outcomes while a listener is
+ * registered, or while a caller waits for a document to be written.
+ */
+public class WriteOutcomeBroadcaster implements WriteOutcomeListener
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteOutcomeBroadcaster.class);
+
+    private final List<WriteOutcomeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(WriteOutcomeListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeListener(WriteOutcomeListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    public boolean hasListeners()
+    {
+        return !listeners.isEmpty();
+    }
+
+    @Override
+    public void onWriteOutcomes(String jobId, long batchNumber, List<DocumentOutcome> outcomes)
+    {
+        for (WriteOutcomeListener listener : listeners) {
+            try {
+                listener.onWriteOutcomes(jobId, batchNumber, outcomes);
+            } catch (RuntimeException ex) {
+                LOGGER.error("Write outcome listener failed for batch {} of job {}", batchNumber, jobId, ex);
+            }
+        }
+    }
+}
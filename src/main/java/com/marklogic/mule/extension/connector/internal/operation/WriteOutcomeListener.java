@@ -0,0 +1,29 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import java.util.List;
+
+/**
+ * Notified of the outcome of the documents of each batch an insertion batcher completes. Called from DMSDK's
+ * listener threads, so implementations must not block.
+ */
+public interface WriteOutcomeListener
+{
+    /**
+     * @param batchNumber the DMSDK batch number within the job, or 0 for documents that were skipped without being
+     *                    batched
+     */
+    void onWriteOutcomes(String jobId, long batchNumber, List<DocumentOutcome> outcomes);
+}
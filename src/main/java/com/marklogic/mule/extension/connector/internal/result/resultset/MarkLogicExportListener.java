@@ -28,12 +28,17 @@ public class MarkLogicExportListener extends ExportListener {
 
     private List<Object> docs;
 
-    private final RecordExtractor recordExtractor = new RecordExtractor();
+    private final RecordExtractor recordExtractor;
 
     private int resultCount;
 
     public MarkLogicExportListener(long maxDocs) {
+        this(maxDocs, new RecordExtractor());
+    }
+
+    public MarkLogicExportListener(long maxDocs, RecordExtractor recordExtractor) {
         super();
+        this.recordExtractor = recordExtractor;
         if (maxDocs > 0) {
             addDocsToListUntilMax(maxDocs);
         } else {
@@ -19,37 +19,99 @@ import com.marklogic.client.document.DocumentRecord;
 import com.marklogic.client.document.GenericDocumentManager;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Iterates across all results returned by a synchronous {@link QueryDefinition}
  * execution.
+ * <p>
+ * When prefetching is enabled, the pages following the one being returned are fetched and extracted in the background,
+ * on the connection's IO scheduler, so that MarkLogic works on the next pages while the flow processes the current one. At most the configured number
+ * of pages are held in memory ahead of the flow, and closing the iterator cancels any that are still being fetched.
+ * <p>
+ * When given a {@link QueryResultCache.CachedQuery}, pages are read from the cache when they were read recently, and
+ * added to it otherwise.
  *
  * @since 1.0.1
  *
  */
 //N.B.: Support server-side transforms
-public class MarkLogicResultSetIterator implements Iterator<Object>
+public class MarkLogicResultSetIterator implements PageIterator
 {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MarkLogicResultSetIterator.class);
-    private DocumentPage documentPage = null;
     private final GenericDocumentManager documentManager;
     private final QueryDefinition query;
     private long maxResults = 0;
     private final AtomicLong start = new AtomicLong(1);
     private final AtomicLong resultCount = new AtomicLong(0);
-    private final RecordExtractor recordExtractor = new RecordExtractor();
+    private final RecordExtractor recordExtractor;
+    private final int prefetchPages;
+    private final QueryResultCache.CachedQuery cachedQuery;
+    private final Deque<Future<FetchedPage>> prefetched = new ArrayDeque<>();
+    private final ExecutorService prefetcher;
+    // The page most recently returned; null until the first page has been returned
+    private FetchedPage lastPage;
 
     public MarkLogicResultSetIterator(MarkLogicConnection connection, QueryDefinition query, Integer pageLength, Long maxResults)
+    {
+        this(connection, query, pageLength, maxResults, 0);
+    }
+
+    /**
+     * @param prefetchPages how many pages to fetch ahead of the one being returned; 0 fetches each page when it is asked for
+     */
+    public MarkLogicResultSetIterator(MarkLogicConnection connection, QueryDefinition query, Integer pageLength, Long maxResults,
+                                      int prefetchPages)
+    {
+        this(connection, query, pageLength, maxResults, prefetchPages, null);
+    }
+
+    /**
+     * @param cachedQuery where pages of the query are cached; null to always read them from MarkLogic
+     */
+    public MarkLogicResultSetIterator(MarkLogicConnection connection, QueryDefinition query, Integer pageLength, Long maxResults,
+                                      int prefetchPages, QueryResultCache.CachedQuery cachedQuery)
+    {
+        this(connection, query, pageLength, maxResults, prefetchPages, cachedQuery, new RecordExtractor());
+    }
+
+    /**
+     * @param recordExtractor turns each document read into the record returned for it
+     */
+    public MarkLogicResultSetIterator(MarkLogicConnection connection, QueryDefinition query, Integer pageLength, Long maxResults,
+                                      int prefetchPages, QueryResultCache.CachedQuery cachedQuery, RecordExtractor recordExtractor)
+    {
+        this(connection, query, pageLength, maxResults, prefetchPages, cachedQuery, recordExtractor,
+            prefetchPages > 0 ? connection.getIoScheduler() : null);
+    }
+
+    /**
+     * @param prefetcher runs the fetches of pages ahead of the one being returned; the iterator cancels the fetches it
+     *                   submitted when it is closed, but does not shut the executor down. When null, each page is
+     *                   fetched when it is asked for.
+     */
+    @SuppressWarnings("java:S107")
+    public MarkLogicResultSetIterator(MarkLogicConnection connection, QueryDefinition query, Integer pageLength, Long maxResults,
+                                      int prefetchPages, QueryResultCache.CachedQuery cachedQuery, RecordExtractor recordExtractor,
+                                      ExecutorService prefetcher)
     {
         this.query = query;
+        this.recordExtractor = recordExtractor;
+        this.prefetcher = prefetcher;
+        this.prefetchPages = prefetcher != null ? Math.max(0, prefetchPages) : 0;
+        this.cachedQuery = cachedQuery;
         DatabaseClient client = connection.getClient();
         documentManager = client.newDocumentManager();
         if (pageLength != null) {
@@ -63,7 +125,7 @@ public class MarkLogicResultSetIterator implements Iterator<Object>
     @Override
     public boolean hasNext()
     {
-        boolean isFirstPageHasNext = start.longValue() == 1 || documentPage.hasNextPage();
+        boolean isFirstPageHasNext = lastPage == null || lastPage.hasNextPage;
         boolean notAtEnd = maxResults == 0 || resultCount.get() < maxResults;
         return isFirstPageHasNext && notAtEnd;
     }
@@ -74,20 +136,120 @@ public class MarkLogicResultSetIterator implements Iterator<Object>
     @Override
     public List<Object> next()
     {
-        long fetchSize = documentManager.getPageLength();
-        documentPage = documentManager.search(query, start.getAndAdd(fetchSize));
-        final List<Object> page = new ArrayList<>((int)fetchSize);
-        for (int i = 0; i < fetchSize && documentPage.hasNext(); i++)
+        FetchedPage page;
+        if (prefetchPages == 0) {
+            page = fetch(start.getAndAdd(documentManager.getPageLength()));
+        } else {
+            if (prefetched.isEmpty()) {
+                submit();
+            }
+            page = await(prefetched.removeFirst());
+        }
+        lastPage = page;
+
+        final List<Object> results = new ArrayList<>(page.records.size());
+        for (Object record : page.records)
         {
             if ((maxResults > 0) && (resultCount.getAndIncrement() >= maxResults)) {
                 LOGGER.info("Processed the user-supplied maximum number of results, which is {}", maxResults);
                 break;
             }
-            DocumentRecord nextRecord = documentPage.next();
-            Object content = recordExtractor.extractRecord(nextRecord);
-            page.add(content);
+            results.add(record);
+        }
+        if (prefetchPages > 0) {
+            prefetchAhead();
+        }
+        return results;
+    }
+
+    /**
+     * Cancels the pages that are still being fetched in the background.
+     */
+    @Override
+    public void close()
+    {
+        Future<FetchedPage> pending;
+        while ((pending = prefetched.pollFirst()) != null) {
+            pending.cancel(true);
+        }
+    }
+
+    private void prefetchAhead()
+    {
+        // The estimate of the last page tells how many pages there are; the server may refine it as pages are read
+        while (prefetched.size() < prefetchPages && start.get() <= lastPage.totalSize &&
+            (maxResults == 0 || start.get() <= maxResults)) {
+            submit();
+        }
+    }
+
+    private void submit()
+    {
+        long pageStart = start.getAndAdd(documentManager.getPageLength());
+        prefetched.addLast(prefetcher.submit(() -> fetch(pageStart)));
+    }
+
+    private static FetchedPage await(Future<FetchedPage> page)
+    {
+        try {
+            return page.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MarkLogicConnectorException("Interrupted while waiting for a page of query results", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new MarkLogicConnectorException("Unable to fetch a page of query results", ex.getCause());
+        }
+    }
+
+    private FetchedPage fetch(long pageStart)
+    {
+        if (cachedQuery == null) {
+            return search(pageStart);
+        }
+        long pageLength = documentManager.getPageLength();
+        FetchedPage page = cachedQuery.get(pageStart, pageLength);
+        if (page == null) {
+            long generation = cachedQuery.generation();
+            page = search(pageStart);
+            cachedQuery.put(generation, pageStart, pageLength, page);
         }
-        documentPage.close();
         return page;
     }
-}
\ No newline at end of file
+
+    private FetchedPage search(long pageStart)
+    {
+        long fetchSize = documentManager.getPageLength();
+        DocumentPage documentPage = documentManager.search(query, pageStart);
+        try {
+            final List<Object> records = new ArrayList<>((int) fetchSize);
+            for (int i = 0; i < fetchSize && documentPage.hasNext(); i++)
+            {
+                DocumentRecord nextRecord = documentPage.next();
+                records.add(recordExtractor.extractRecord(nextRecord));
+            }
+            return new FetchedPage(records, documentPage.hasNextPage(), documentPage.getTotalSize());
+        } finally {
+            documentPage.close();
+        }
+    }
+
+    /**
+     * The extracted records of a page, and what the page said about the pages after it.
+     */
+    static final class FetchedPage
+    {
+        final List<Object> records;
+        private final boolean hasNextPage;
+        private final long totalSize;
+
+        FetchedPage(List<Object> records, boolean hasNextPage, long totalSize)
+        {
+            this.records = records;
+            this.hasNextPage = hasNextPage;
+            this.totalSize = totalSize;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.result.resultset;
+
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.document.DocumentPage;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.document.GenericDocumentManager;
+import com.marklogic.client.document.ServerTransform;
+import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Iterates across the results of a query a page at a time without offsets. A {@link QueryBatcher} reads the matching
+ * URIs of each forest in URI order, continuing from the last URI it read, and the documents of each batch of URIs
+ * become a page; so the thousandth page costs the same as the first.
+ * <p>
+ * With more than one thread, the forests are read concurrently and each thread reads the documents of its own batch,
+ * so reads scale with the number of forests. Pages are then returned as they are read, unless ordering is requested,
+ * in which case they are returned in the order their URIs were read, with the documents of each page in URI order.
+ * <p>
+ * The batcher threads wait once the configured number of pages are waiting to be returned, so memory stays bounded
+ * however many results there are. Closing the iterator stops the job.
+ */
+public class MarkLogicUriCursorIterator implements PageIterator
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarkLogicUriCursorIterator.class);
+
+    // Marks the end of the results
+    private static final List<Object> END = new ArrayList<>(0);
+
+    private final DataMovementManager dmm;
+    private final QueryBatcher batcher;
+    private final GenericDocumentManager documentManager;
+    private final ServerTransform transform;
+    private final RecordExtractor recordExtractor;
+    private final AtomicLong resultCount = new AtomicLong(0);
+    private final boolean ordered;
+    private final int capacity;
+    private long maxResults = 0;
+    private boolean started;
+    private boolean finished;
+
+    // Guards the pages read but not yet returned, keyed by job batch number, and the batches still being read
+    private final Object lock = new Object();
+    private final TreeMap<Long, List<Object>> readyPages = new TreeMap<>();
+    private final NavigableSet<Long> batchesInFlight = new TreeSet<>();
+    private long nextBatchNumber = 1;
+    private boolean jobComplete;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    /**
+     * Reads one forest at a time, in order.
+     *
+     * @param batcher a batcher for the query, which is configured and started by this iterator
+     * @param pageLength number of documents per page
+     * @param prefetchPages how many pages may be waiting to be returned; at least one always may
+     * @param transform applied to each document read, or null
+     */
+    public MarkLogicUriCursorIterator(MarkLogicConnection connection, DataMovementManager dmm, QueryBatcher batcher, int pageLength,
+                                      Long maxResults, int prefetchPages, ServerTransform transform)
+    {
+        this(connection, dmm, batcher, pageLength, maxResults, prefetchPages, 1, true, transform);
+    }
+
+    /**
+     * @param threadCount how many batches are read at once
+     * @param ordered whether pages are returned in the order their URIs were read rather than as soon as they are read
+     */
+    @SuppressWarnings("java:S107")
+    public MarkLogicUriCursorIterator(MarkLogicConnection connection, DataMovementManager dmm, QueryBatcher batcher, int pageLength,
+                                      Long maxResults, int prefetchPages, int threadCount, boolean ordered, ServerTransform transform)
+    {
+        this(connection, dmm, batcher, pageLength, maxResults, prefetchPages, threadCount, ordered, transform, new RecordExtractor());
+    }
+
+    /**
+     * @param recordExtractor turns each document read into the record returned for it
+     */
+    @SuppressWarnings("java:S107")
+    public MarkLogicUriCursorIterator(MarkLogicConnection connection, DataMovementManager dmm, QueryBatcher batcher, int pageLength,
+                                      Long maxResults, int prefetchPages, int threadCount, boolean ordered, ServerTransform transform,
+                                      RecordExtractor recordExtractor)
+    {
+        this.dmm = dmm;
+        this.recordExtractor = recordExtractor;
+        this.batcher = batcher;
+        this.transform = transform;
+        this.ordered = ordered;
+        this.documentManager = connection.getClient().newDocumentManager();
+        this.capacity = Math.max(1, Math.max(prefetchPages, threadCount));
+        if (maxResults != null) {
+            this.maxResults = maxResults;
+        }
+        batcher.withBatchSize(pageLength)
+            .withThreadCount(Math.max(1, threadCount))
+            .onUrisReady(this::readPage)
+            .onQueryFailure(throwable -> {
+                LOGGER.error("Unable to read URIs of queryDocs results", throwable);
+                failure = throwable;
+            })
+            .onJobCompletion(completedBatcher -> completeJob());
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return !finished && (maxResults == 0 || resultCount.get() < maxResults);
+    }
+
+    @Override
+    public List<Object> next()
+    {
+        if (!started) {
+            started = true;
+            dmm.startJob(batcher);
+        }
+        if (finished) {
+            return new ArrayList<>();
+        }
+
+        List<Object> page = takePage();
+        if (page == END) {
+            finished = true;
+            if (failure != null) {
+                throw new MarkLogicConnectorException("Unable to read queryDocs results", failure);
+            }
+            return new ArrayList<>();
+        }
+
+        if (maxResults > 0) {
+            long remaining = maxResults - resultCount.get();
+            if (page.size() >= remaining) {
+                LOGGER.info("Processed the user-supplied maximum number of results, which is {}", maxResults);
+                page = new ArrayList<>(page.subList(0, (int) remaining));
+                finished = true;
+            }
+        }
+        resultCount.addAndGet(page.size());
+        return page;
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        synchronized (lock) {
+            readyPages.clear();
+            lock.notifyAll();
+        }
+        if (started && !batcher.isStopped()) {
+            dmm.stopJob(batcher);
+        }
+    }
+
+    /**
+     * Called once every batch of the job has been read, or the job has been stopped.
+     */
+    void completeJob()
+    {
+        synchronized (lock) {
+            jobComplete = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void readPage(QueryBatch batch)
+    {
+        if (closed) {
+            return;
+        }
+        long batchNumber = batch.getJobBatchNumber();
+        synchronized (lock) {
+            batchesInFlight.add(batchNumber);
+        }
+
+        List<Object> page = null;
+        try {
+            DocumentPage documents = transform != null ?
+                documentManager.read(transform, batch.getItems()) : documentManager.read(batch.getItems());
+            try {
+                List<DocumentRecord> records = new ArrayList<>(batch.getItems().length);
+                while (documents.hasNext()) {
+                    records.add(documents.next());
+                }
+                if (ordered) {
+                    records.sort(Comparator.comparing(DocumentRecord::getUri));
+                }
+                page = new ArrayList<>(records.size());
+                for (DocumentRecord record : records) {
+                    page.add(recordExtractor.extractRecord(record));
+                }
+            } finally {
+                documents.close();
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.error("Unable to read documents of queryDocs results", ex);
+            failure = ex;
+        }
+        putPage(batchNumber, page);
+    }
+
+    /**
+     * Waits for room among the pages waiting to be returned, which keeps the batcher from reading further ahead than
+     * the flow, unless the iterator is closed in the meantime. When ordering, the page the flow needs next is always
+     * let in, so that it cannot be kept out by the pages after it. A batch whose documents have all gone since their
+     * URIs were read is recorded as an empty page, so that its number is not waited for.
+     */
+    void putPage(long batchNumber, List<Object> page)
+    {
+        synchronized (lock) {
+            try {
+                while (!closed && readyPages.size() >= capacity && (!ordered || batchNumber != nextBatchNumber)) {
+                    lock.wait(100);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            batchesInFlight.remove(batchNumber);
+            if (page != null && !closed) {
+                readyPages.put(batchNumber, page);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    List<Object> takePage()
+    {
+        synchronized (lock) {
+            try {
+                while (true) {
+                    if (failure != null) {
+                        return END;
+                    }
+                    if (!readyPages.isEmpty()) {
+                        List<Object> page = ordered ? nextInOrder() : readyPages.pollFirstEntry().getValue();
+                        if (page != null) {
+                            lock.notifyAll();
+                            // An empty page would end the results for Mule
+                            if (page.isEmpty()) {
+                                continue;
+                            }
+                            return page;
+                        }
+                    } else if (jobComplete && batchesInFlight.isEmpty()) {
+                        return END;
+                    }
+                    lock.wait(100);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MarkLogicConnectorException("Interrupted while waiting for a page of query results", ex);
+            }
+        }
+    }
+
+    /**
+     * @return the next page in batch order, or null if it has not been read yet
+     */
+    private List<Object> nextInOrder()
+    {
+        List<Object> page = readyPages.remove(nextBatchNumber);
+        if (page != null) {
+            nextBatchNumber++;
+            return page;
+        }
+        // A batch number may be handed out well before its batch is read, so a gap is only skipped once the job is
+        // complete and nothing more can arrive
+        if (jobComplete && batchesInFlight.isEmpty()) {
+            Map.Entry<Long, List<Object>> next = readyPages.pollFirstEntry();
+            nextBatchNumber = next.getKey() + 1;
+            return next.getValue();
+        }
+        return null;
+    }
+}
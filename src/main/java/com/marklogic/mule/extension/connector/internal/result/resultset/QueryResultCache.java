@@ -0,0 +1,292 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.result.resultset;
+
+import org.mule.runtime.api.metadata.TypedValue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the pages of query results read through a connection for a limited time, so that flows running the same
+ * query over and over, e.g. to look up reference data, are answered without a round trip to MarkLogic.
+ * <p>
+ * Each cached query may name the collections holding the documents it reads. When documents written through the same
+ * connection land in one of those collections, the query's pages are discarded; the pages of queries that name no
+ * collections are discarded by every write. Writes made by anything other than this connection are only noticed once
+ * the pages expire.
+ * <p>
+ * The cache is bounded both by its number of pages and by an estimate of the memory taken by their records, evicting
+ * the least recently used pages first. Cached records are shared by every caller that reads them, and must not be
+ * modified.
+ */
+public class QueryResultCache
+{
+    private final Map<Key, Entry> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // Changed by every invalidation, so that pages read while documents were being written are not cached afterwards
+    private long generation;
+    private long bytes;
+
+    /**
+     * @param query identifies the query, its options and its transform
+     * @param collections the collections holding the documents the query reads; empty if not known
+     * @param ttlMillis how long pages of the query are kept
+     * @param maxEntries the number of pages the whole cache may hold
+     * @param maxBytes the estimated size of the records the whole cache may hold
+     * @return the view of this cache used to read and add the pages of the query
+     */
+    public CachedQuery forQuery(String query, Collection<String> collections, long ttlMillis, int maxEntries, long maxBytes)
+    {
+        return new CachedQuery(query, collections == null ? Collections.emptySet() : new HashSet<>(collections),
+            ttlMillis, maxEntries, maxBytes);
+    }
+
+    /**
+     * Discards the pages of the queries that read any of the collections, or that did not name their collections.
+     *
+     * @param collections the collections of documents that were written
+     */
+    public void invalidate(Collection<String> collections)
+    {
+        synchronized (pages) {
+            generation++;
+            Iterator<Entry> entries = pages.values().iterator();
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (entry.collections.isEmpty() || !Collections.disjoint(entry.collections, collections)) {
+                    bytes -= entry.bytes;
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards every page, e.g. once documents have been deleted without knowing which collections they were in.
+     */
+    public void invalidateAll()
+    {
+        synchronized (pages) {
+            generation++;
+            pages.clear();
+            bytes = 0;
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    public int size()
+    {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    /**
+     * @return the estimated size, in bytes, of the records of the cached pages
+     */
+    public long getBytes()
+    {
+        synchronized (pages) {
+            return bytes;
+        }
+    }
+
+    /**
+     * A rough estimate of the memory taken by a record extracted by {@link RecordExtractor}; it only needs to be
+     * proportionate, so that large documents take up more of the cache than small ones.
+     */
+    static long estimateBytes(Object value)
+    {
+        if (value == null) {
+            return 8;
+        }
+        if (value instanceof CharSequence) {
+            return 40 + 2L * ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return 16 + (long) ((byte[]) value).length;
+        }
+        if (value instanceof TypedValue) {
+            return 32 + estimateBytes(((TypedValue<?>) value).getValue());
+        }
+        if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 40;
+            for (Object element : (Collection<?>) value) {
+                size += 8 + estimateBytes(element);
+            }
+            return size;
+        }
+        return 24;
+    }
+
+    /**
+     * The pages of a single query.
+     */
+    public final class CachedQuery
+    {
+        private final String query;
+        private final Set<String> collections;
+        private final long ttlNanos;
+        private final int maxEntries;
+        private final long maxBytes;
+
+        private CachedQuery(String query, Set<String> collections, long ttlMillis, int maxEntries, long maxBytes)
+        {
+            this.query = query;
+            this.collections = collections;
+            this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * @return the page of results starting at the position, or null if it is not cached or has expired
+         */
+        MarkLogicResultSetIterator.FetchedPage get(long pageStart, long pageLength)
+        {
+            Key key = new Key(query, pageStart, pageLength);
+            synchronized (pages) {
+                Entry entry = pages.get(key);
+                if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return entry.page;
+                }
+                if (entry != null) {
+                    bytes -= entry.bytes;
+                    pages.remove(key);
+                }
+            }
+            misses.increment();
+            return null;
+        }
+
+        /**
+         * @return the generation to hand to {@link #put} once the page read from MarkLogic has been extracted
+         */
+        long generation()
+        {
+            synchronized (pages) {
+                return generation;
+            }
+        }
+
+        /**
+         * Caches a page of results, unless the cache was invalidated since the page was read, or the page alone is
+         * larger than the cache.
+         *
+         * @param readGeneration the generation of the cache before the page was read
+         */
+        void put(long readGeneration, long pageStart, long pageLength, MarkLogicResultSetIterator.FetchedPage page)
+        {
+            if (maxEntries < 1) {
+                return;
+            }
+            long pageBytes = 64;
+            for (Object record : page.records) {
+                pageBytes += estimateBytes(record);
+            }
+            if (pageBytes > maxBytes) {
+                return;
+            }
+            Entry entry = new Entry(page, pageBytes, System.nanoTime() + ttlNanos, collections);
+            synchronized (pages) {
+                if (readGeneration != generation) {
+                    return;
+                }
+                Entry replaced = pages.put(new Key(query, pageStart, pageLength), entry);
+                bytes += pageBytes - (replaced != null ? replaced.bytes : 0);
+                Iterator<Entry> eldest = pages.values().iterator();
+                while (pages.size() > maxEntries || bytes > maxBytes) {
+                    bytes -= eldest.next().bytes;
+                    eldest.remove();
+                }
+            }
+        }
+    }
+
+    private static final class Entry
+    {
+        private final MarkLogicResultSetIterator.FetchedPage page;
+        private final long bytes;
+        private final long expiresAt;
+        private final Set<String> collections;
+
+        private Entry(MarkLogicResultSetIterator.FetchedPage page, long bytes, long expiresAt, Set<String> collections)
+        {
+            this.page = page;
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+            this.collections = collections;
+        }
+    }
+
+    private static final class Key
+    {
+        private final String query;
+        private final long pageStart;
+        private final long pageLength;
+
+        private Key(String query, long pageStart, long pageLength)
+        {
+            this.query = query;
+            this.pageStart = pageStart;
+            this.pageLength = pageLength;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return pageStart == that.pageStart && pageLength == that.pageLength && query.equals(that.query);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(query, pageStart, pageLength);
+        }
+    }
+}
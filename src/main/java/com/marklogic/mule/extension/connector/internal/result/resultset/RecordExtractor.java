@@ -13,59 +13,115 @@
  */
 package com.marklogic.mule.extension.connector.internal.result.resultset;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.marklogic.client.document.DocumentRecord;
 import com.marklogic.client.io.BytesHandle;
-import com.marklogic.client.io.Format;
-import com.marklogic.client.io.JacksonHandle;
-import com.marklogic.client.io.StringHandle;
 import com.marklogic.mule.extension.connector.api.operation.MarkLogicMimeType;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicOutputMode;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
+import org.mule.runtime.api.metadata.DataType;
+import org.mule.runtime.api.metadata.MediaType;
+import org.mule.runtime.api.metadata.TypedValue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Intent is for a dependent to hold onto an instance of this to avoid re-instantiation of the Jackson ObjectMapper.
  * Mulesoft does not want static instances.
+ * <p>
+ * Every document is read into a byte array, and JSON documents are parsed straight from those bytes into maps, lists,
+ * and values in a single pass. The kind of document each MIME type denotes is remembered, as only a handful of MIME
+ * types are usually seen.
  */
 public class RecordExtractor {
 
+    static final int MAX_MIME_TYPES = 256;
+
     private ObjectMapper objectMapper = new ObjectMapper();
+    private final MarkLogicOutputMode outputMode;
+    private final Map<String, MarkLogicMimeType> mimeTypes = new ConcurrentHashMap<>();
+
+    public RecordExtractor() {
+        this(MarkLogicOutputMode.PARSED);
+    }
+
+    public RecordExtractor(MarkLogicOutputMode outputMode) {
+        this.outputMode = outputMode;
+    }
 
     public Object extractRecord(DocumentRecord doc) {
-        MarkLogicMimeType mimeType = fromString(doc.getMimetype());
-        if (MarkLogicMimeType.xml.equals(mimeType)) {
-            return doc.getContent(new StringHandle()).withMimetype("application/xml").withFormat(Format.XML).get();
+        if (MarkLogicOutputMode.RAW.equals(outputMode)) {
+            return extractRawRecord(doc);
+        }
+        MarkLogicMimeType mimeType = getMimeType(doc.getMimetype());
+        byte[] content = readContent(doc);
+        if (MarkLogicMimeType.xml.equals(mimeType) || MarkLogicMimeType.text.equals(mimeType)) {
+            return new String(content, StandardCharsets.UTF_8);
         } else if (MarkLogicMimeType.json.equals(mimeType)) {
-            Object content;
-            JsonNode jsonNode = doc.getContent(new JacksonHandle()).get();
-            JsonNodeType nodeType = jsonNode.getNodeType();
-            if (null == nodeType) {
-                content = objectMapper.convertValue(jsonNode, Map.class);
-            } else switch (nodeType) {
-                case ARRAY:
-                    content = objectMapper.convertValue(jsonNode, List.class);
-                    break;
-                case STRING:
-                    content = objectMapper.convertValue(jsonNode, String.class);
-                    break;
-                case NUMBER:
-                    content = objectMapper.convertValue(jsonNode, Number.class);
-                    break;
-                default:
-                    content = objectMapper.convertValue(jsonNode, Map.class);
-                    break;
+            // Objects become maps, arrays become lists, and scalars become strings, numbers, and booleans
+            try {
+                return objectMapper.readValue(content, Object.class);
+            } catch (IOException ex) {
+                throw new MarkLogicConnectorException("Unable to parse JSON document " + doc.getUri(), ex);
             }
-            return content;
-        } else if (MarkLogicMimeType.text.equals(mimeType)) {
-            return doc.getContent(new StringHandle()).get();
         }
+        return content;
+    }
+
+    /**
+     * Returns the unparsed content with the document's MIME type. The content is held as a byte array, rather than
+     * a stream, so that the record can be cached and read again; see {@link #toStream(Object)}.
+     */
+    private Object extractRawRecord(DocumentRecord doc) {
+        byte[] content = readContent(doc);
+        DataType dataType = DataType.builder()
+            .type(byte[].class)
+            .mediaType(doc.getMimetype() != null ? doc.getMimetype() : MediaType.BINARY.toRfcString())
+            .build();
+        return new TypedValue<>(content, dataType, OptionalLong.of(content.length));
+    }
+
+    private static byte[] readContent(DocumentRecord doc) {
         return doc.getContent(new BytesHandle()).get();
     }
 
+    /**
+     * @return the content of a record returned in {@link MarkLogicOutputMode#RAW} mode, as a new stream with the
+     * record's MIME type
+     */
+    public static TypedValue<InputStream> toStream(Object rawRecord) {
+        TypedValue<?> record = (TypedValue<?>) rawRecord;
+        byte[] content = (byte[]) record.getValue();
+        DataType dataType = DataType.builder()
+            .type(InputStream.class)
+            .mediaType(record.getDataType().getMediaType())
+            .build();
+        return new TypedValue<>(new ByteArrayInputStream(content), dataType, record.getByteLength());
+    }
+
+    private MarkLogicMimeType getMimeType(String mimeString) {
+        if (mimeString == null) {
+            return MarkLogicMimeType.binary;
+        }
+        MarkLogicMimeType mimeType = mimeTypes.get(mimeString);
+        if (mimeType == null) {
+            if (mimeTypes.size() >= MAX_MIME_TYPES) {
+                mimeTypes.clear();
+            }
+            mimeType = fromString(mimeString);
+            mimeTypes.put(mimeString, mimeType);
+        }
+        return mimeType;
+    }
+
     private MarkLogicMimeType fromString(String mimeString) {
         if (mimeString != null) {
             List<String> typeString = Arrays.asList(mimeString.split("/"));
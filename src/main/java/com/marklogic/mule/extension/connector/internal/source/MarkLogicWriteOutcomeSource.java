@@ -0,0 +1,114 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.source;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
+import com.marklogic.mule.extension.connector.internal.operation.DocumentOutcome;
+import com.marklogic.mule.extension.connector.internal.operation.WriteOutcomeListener;
+import org.mule.runtime.extension.api.annotation.Alias;
+import org.mule.runtime.extension.api.annotation.param.Config;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.source.Source;
+import org.mule.runtime.extension.api.runtime.source.SourceCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mule.runtime.extension.api.annotation.param.MediaType.APPLICATION_JSON;
+
+/**
+ * <p>Emits a JSON object for every batch the insertion batchers of its configuration complete, listing the URIs that
+ * were written, skipped because incremental writes found them unchanged, or failed after any retries, along with the
+ * time the slowest of them took from being queued to being written. Flows can use it to acknowledge upstream messages
+ * only once their documents have been durably written.</p>
+ * @since 1.3.0
+ */
+@Alias("write-outcome-listener")
+@DisplayName("On Write Outcome")
+@MediaType(value = APPLICATION_JSON, strict = true)
+public class MarkLogicWriteOutcomeSource extends Source<InputStream, Void> implements WriteOutcomeListener
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarkLogicWriteOutcomeSource.class);
+
+    @Config
+    private MarkLogicConfiguration markLogicConfiguration;
+
+    private final ObjectMapper jsonFactory = new ObjectMapper();
+
+    private volatile SourceCallback<InputStream, Void> sourceCallback;
+
+    @Override
+    public void onStart(SourceCallback<InputStream, Void> sourceCallback)
+    {
+        this.sourceCallback = sourceCallback;
+        markLogicConfiguration.getWriteOutcomes().addListener(this);
+    }
+
+    @Override
+    public void onStop()
+    {
+        markLogicConfiguration.getWriteOutcomes().removeListener(this);
+        sourceCallback = null;
+    }
+
+    @Override
+    public void onWriteOutcomes(String jobId, long batchNumber, List<DocumentOutcome> outcomes)
+    {
+        SourceCallback<InputStream, Void> callback = sourceCallback;
+        if (callback == null) {
+            return;
+        }
+
+        ObjectNode rootObj = jsonFactory.createObjectNode();
+        rootObj.put("jobId", jobId);
+        rootObj.put("batchNumber", batchNumber);
+        ArrayNode succeeded = rootObj.putArray("succeeded");
+        ArrayNode skipped = rootObj.putArray("skipped");
+        ArrayNode failed = rootObj.putArray("failed");
+        long latencyNanos = 0;
+        for (DocumentOutcome outcome : outcomes) {
+            latencyNanos = Math.max(latencyNanos, outcome.getLatencyNanos());
+            switch (outcome.getStatus()) {
+                case WRITTEN:
+                    succeeded.add(outcome.getUri());
+                    break;
+                case SKIPPED:
+                    skipped.add(outcome.getUri());
+                    break;
+                default:
+                    failed.addObject().put("uri", outcome.getUri()).put("error", outcome.getError());
+                    break;
+            }
+        }
+        rootObj.put("latencyMillis", TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+
+        try {
+            callback.handle(Result.<InputStream, Void>builder()
+                .output(new ByteArrayInputStream(jsonFactory.writeValueAsBytes(rootObj)))
+                .build());
+        } catch (IOException ex) {
+            LOGGER.error("Unable to serialize write outcomes of batch {} of job {}", batchNumber, jobId, ex);
+        }
+    }
+}
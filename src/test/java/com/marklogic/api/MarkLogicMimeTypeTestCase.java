@@ -13,18 +13,17 @@
  */
 package com.marklogic.api;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marklogic.client.document.DocumentDescriptor;
 import com.marklogic.client.document.DocumentRecord;
-import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.Format;
-import com.marklogic.client.io.JacksonHandle;
-import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.io.marker.AbstractReadHandle;
+import com.marklogic.client.io.marker.BufferableHandle;
 import com.marklogic.client.io.marker.DocumentMetadataReadHandle;
 import com.marklogic.mule.extension.connector.internal.result.resultset.RecordExtractor;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 
 import static org.junit.Assert.assertEquals;
@@ -35,38 +34,55 @@ public class MarkLogicMimeTypeTestCase {
 
     @Test
     public void testXml() {
-        Object obj = recordExtractor.extractRecord(new TestRecord(new StringHandle("<test/>"), "application/xml"));
+        Object obj = recordExtractor.extractRecord(new TestRecord("<test/>", "application/xml"));
         assertEquals("<test/>", obj);
     }
 
     @Test
     public void testJson() {
-        Object obj = recordExtractor.extractRecord(new TestRecord(new JacksonHandle(
-            new ObjectMapper().createObjectNode().put("hello", "world")), "application/json"));
+        Object obj = recordExtractor.extractRecord(new TestRecord("{\"hello\":\"world\"}", "application/json"));
         LinkedHashMap map = (LinkedHashMap) obj;
         assertEquals("world", map.get("hello"));
     }
 
+    @Test
+    public void testJsonArray() {
+        Object obj = recordExtractor.extractRecord(new TestRecord("[1, \"two\"]", "application/json"));
+        assertEquals(Arrays.asList(1, "two"), obj);
+    }
+
     @Test
     public void testText() {
-        Object obj = recordExtractor.extractRecord(new TestRecord(new StringHandle("any text"), "text/plain"));
+        Object obj = recordExtractor.extractRecord(new TestRecord("any text", "text/plain"));
         assertEquals("any text", obj);
     }
 
     @Test
     public void testBinary() {
-        Object obj = recordExtractor.extractRecord(new TestRecord(new BytesHandle("any text".getBytes()), null));
+        Object obj = recordExtractor.extractRecord(new TestRecord("any text", null));
         assertEquals("any text", new String((byte[]) obj));
     }
+
+    @Test
+    public void testRecordsDoNotShareContent() {
+        Object first = recordExtractor.extractRecord(new TestRecord("first", "application/octet-stream"));
+        Object second = recordExtractor.extractRecord(new TestRecord("second", "application/octet-stream"));
+        assertEquals("first", new String((byte[]) first));
+        assertEquals("second", new String((byte[]) second));
+        assertEquals("third", recordExtractor.extractRecord(new TestRecord("third", "text/plain")));
+    }
 }
 
+/**
+ * A record whose content is parsed into whichever handle it is read with, as a record read from a DocumentPage is.
+ */
 class TestRecord implements DocumentRecord {
 
-    private AbstractReadHandle fakeContent;
+    private byte[] fakeContent;
     private String mimetype;
 
-    public TestRecord(AbstractReadHandle fakeContent, String mimetype) {
-        this.fakeContent = fakeContent;
+    public TestRecord(String fakeContent, String mimetype) {
+        this.fakeContent = fakeContent.getBytes(StandardCharsets.UTF_8);
         this.mimetype = mimetype;
     }
 
@@ -92,7 +108,7 @@ class TestRecord implements DocumentRecord {
 
     @Override
     public long getLength() {
-        return 0;
+        return fakeContent.length;
     }
 
     @Override
@@ -107,11 +123,12 @@ class TestRecord implements DocumentRecord {
 
     @Override
     public <T extends AbstractReadHandle> T getContent(T t) {
-        return (T) fakeContent;
+        ((BufferableHandle) t).fromBuffer(fakeContent);
+        return t;
     }
 
     @Override
     public <T> T getContentAs(Class<T> aClass) {
         return null;
     }
-}
\ No newline at end of file
+}
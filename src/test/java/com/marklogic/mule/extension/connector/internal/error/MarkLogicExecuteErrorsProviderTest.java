@@ -35,8 +35,10 @@ public class MarkLogicExecuteErrorsProviderTest
         MarkLogicExecuteErrorsProvider instance = new MarkLogicExecuteErrorsProvider();
         Set<ErrorTypeDefinition> result = instance.getErrorTypes();
 
-        assertEquals(1, result.size());
+        assertEquals(3, result.size());
         assertTrue(result.contains(MarkLogicConnectorSimpleErrorType.DATA_MOVEMENT_ERROR));
+        assertTrue(result.contains(MarkLogicConnectorSimpleErrorType.QUEUE_FULL));
+        assertTrue(result.contains(MarkLogicConnectorSimpleErrorType.COMMIT_TIMEOUT));
     }
 
 }
@@ -13,6 +13,7 @@
  */
 package com.marklogic.mule.extension.connector.internal.exception;
 
+import com.marklogic.mule.extension.connector.internal.error.MarkLogicConnectorSimpleErrorType;
 import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -46,4 +47,13 @@ public class MarkLogicConnectorExceptionTest
         assertEquals(thrownMsg, exception.getCause().getMessage());
     }
 
+    @Test
+    public void testExceptionWithErrorType()
+    {
+        String errorMsg = "Test MarkLogic Queue Full Exception";
+        MarkLogicConnectorException exception = new MarkLogicConnectorException(errorMsg, MarkLogicConnectorSimpleErrorType.QUEUE_FULL);
+
+        assertEquals(errorMsg, exception.getMessage());
+        assertEquals(MarkLogicConnectorSimpleErrorType.QUEUE_FULL, exception.getType());
+    }
 }
@@ -0,0 +1,84 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long previous = -1;
+        for (int index = 0; index <= LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE); index++) {
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertEquals(index, LatencyHistogram.bucketIndex(previous + 1));
+            assertEquals(index, LatencyHistogram.bucketIndex(highest));
+            previous = highest;
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE, previous);
+    }
+
+    @Test
+    public void testPercentilesAreWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(5_000_500, histogram.getMean(), 0.001);
+        assertWithinPrecision(5_000_000, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(9_900_000, histogram.getValueAtPercentile(99));
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testOutOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void testMetricsCountErrorsAndDocuments() {
+        ConnectorMetrics metrics = new ConnectorMetrics();
+        metrics.record(2_000_000, 10, false);
+        metrics.record(4_000_000, 5, true);
+        assertEquals(2, metrics.getCount());
+        assertEquals(1, metrics.getErrorCount());
+        assertEquals(10, metrics.getDocumentCount());
+        assertEquals(3, metrics.getMeanLatencyMillis(), 0.001);
+        assertEquals(4, metrics.getMaxLatencyMillis(), 0.001);
+    }
+
+    @Test
+    public void testTimeoutsAreNotErrors() {
+        ConnectorMetrics metrics = new ConnectorMetrics();
+        metrics.recordTimeout(3_000_000);
+        assertEquals(1, metrics.getCount());
+        assertEquals(1, metrics.getTimeoutCount());
+        assertEquals(0, metrics.getErrorCount());
+        assertEquals(0, metrics.getDocumentCount());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual + " is not within 1/32 of " + expected, Math.abs(actual - expected) <= expected / 32);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBatchControllerTest {
+
+    @Test
+    public void testFlushesAtEffectiveBatchSize() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(100, 4, 1000);
+        assertEquals(25, controller.getBatchSize());
+        for (int i = 1; i < 25; i++) {
+            assertFalse(controller.recordAdd());
+        }
+        assertTrue(controller.recordAdd());
+    }
+
+    @Test
+    public void testFastBatchesGrowBatchSizeThenConcurrency() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(40, 4, 60000);
+        controller.recordFailure();
+        assertEquals(2, controller.getConcurrency());
+
+        for (int i = 0; i < 100; i++) {
+            completeOneBatch(controller);
+        }
+        assertEquals(40, controller.getBatchSize());
+        assertEquals(4, controller.getConcurrency());
+    }
+
+    @Test
+    public void testSlowBatchesShrinkBatchSize() throws InterruptedException {
+        AdaptiveBatchController controller = new AdaptiveBatchController(100, 4, 1);
+        int before = controller.getBatchSize();
+        int size = controller.getBatchSize();
+        for (int i = 0; i < size; i++) {
+            controller.recordAdd();
+        }
+        Thread.sleep(10);
+        controller.recordCompleted(size);
+        assertTrue(controller.getBatchSize() < before);
+    }
+
+    @Test
+    public void testFailureHalvesBatchSizeAndConcurrency() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(100, 4, 1000);
+        controller.recordFailure();
+        assertEquals(12, controller.getBatchSize());
+        assertEquals(2, controller.getConcurrency());
+    }
+
+    private void completeOneBatch(AdaptiveBatchController controller) {
+        int size = controller.getBatchSize();
+        for (int i = 0; i < size; i++) {
+            controller.recordAdd();
+        }
+        controller.recordCompleted(size);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.WriteBatch;
+import com.marklogic.client.datamovement.WriteBatcher;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRetryHandlerTest {
+
+    @Test
+    public void testDelayGrowsExponentially() {
+        BatchRetryHandler handler = new BatchRetryHandler(5, 100, 60000, null, (batch, failure) -> {});
+        for (int attempt = 1; attempt <= 5; attempt++) {
+            long ceiling = 100L << (attempt - 1);
+            long delay = handler.computeDelay(attempt);
+            assertTrue("Delay " + delay + " for attempt " + attempt, delay >= ceiling / 2 && delay <= ceiling);
+        }
+    }
+
+    @Test
+    public void testDelayIsCapped() {
+        BatchRetryHandler handler = new BatchRetryHandler(100, 100, 1000, null, (batch, failure) -> {});
+        for (int attempt = 1; attempt <= 100; attempt++) {
+            long delay = handler.computeDelay(attempt);
+            assertTrue("Delay " + delay + " for attempt " + attempt, delay > 0 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void testBatchOfStoppedJobIsDeadLetteredAtOnce() {
+        AtomicInteger retries = new AtomicInteger();
+        WriteBatch batch = newBatch(true, retries, 0);
+        AtomicReference<WriteBatch> exhausted = new AtomicReference<>();
+        BatchRetryHandler handler = new BatchRetryHandler(5, 60000, 60000, null, (failed, failure) -> exhausted.set(failed));
+
+        handler.onBatchFailure(batch, new RuntimeException("write failed"));
+        assertSame(batch, exhausted.get());
+        assertEquals(0, retries.get());
+    }
+
+    @Test
+    public void testRetriesWithoutSchedulerDoNotWait() {
+        AtomicInteger retries = new AtomicInteger();
+        WriteBatch batch = newBatch(false, retries, 2);
+        AtomicReference<WriteBatch> exhausted = new AtomicReference<>();
+        BatchRetryHandler handler = new BatchRetryHandler(5, 60000, 60000, null, (failed, failure) -> exhausted.set(failed));
+
+        long start = System.currentTimeMillis();
+        handler.onBatchFailure(batch, new RuntimeException("write failed"));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(3, retries.get());
+        assertNull(exhausted.get());
+    }
+
+    @Test
+    public void testPendingRetriesAreAwaited() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            AtomicInteger retries = new AtomicInteger();
+            BatchRetryHandler handler = new BatchRetryHandler(5, 200, 200, scheduler, (failed, failure) -> {});
+            handler.onBatchFailure(newBatch(false, retries, 0), new RuntimeException("write failed"));
+            assertFalse(handler.awaitRetries(10));
+            assertTrue(handler.awaitRetries(5000));
+            assertEquals(1, retries.get());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @param failingRetries how many retries fail before one succeeds
+     */
+    private static WriteBatch newBatch(boolean stopped, AtomicInteger retries, int failingRetries) {
+        JobTicket jobTicket = (JobTicket) Proxy.newProxyInstance(JobTicket.class.getClassLoader(), new Class<?>[]{JobTicket.class},
+            (proxy, method, args) -> "getJobId".equals(method.getName()) ? "test-job" : null);
+        WriteBatcher batcher = (WriteBatcher) Proxy.newProxyInstance(WriteBatcher.class.getClassLoader(), new Class<?>[]{WriteBatcher.class},
+            (proxy, method, args) -> {
+                if ("isStopped".equals(method.getName())) {
+                    return stopped;
+                }
+                if ("retry".equals(method.getName()) && retries.incrementAndGet() <= failingRetries) {
+                    throw new IllegalStateException("retry failed");
+                }
+                return null;
+            });
+        return (WriteBatch) Proxy.newProxyInstance(WriteBatch.class.getClassLoader(), new Class<?>[]{WriteBatch.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getBatcher":
+                        return batcher;
+                    case "getJobTicket":
+                        return jobTicket;
+                    case "getJobBatchNumber":
+                        return 1L;
+                    default:
+                        return null;
+                }
+            });
+    }
+}
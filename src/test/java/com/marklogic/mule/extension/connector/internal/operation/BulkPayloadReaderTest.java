@@ -0,0 +1,226 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.io.BytesHandle;
+import org.junit.Test;
+import org.mule.runtime.api.streaming.CursorProvider;
+import org.mule.runtime.api.streaming.bytes.CursorStream;
+import org.mule.runtime.api.streaming.bytes.CursorStreamProvider;
+import org.mule.runtime.api.streaming.object.CursorIterator;
+import org.mule.runtime.api.streaming.object.CursorIteratorProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BulkPayloadReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testElementCursorsAreClosedOnceRead() throws IOException {
+        TestCursorProvider first = new TestCursorProvider("{\"id\":1}");
+        TestCursorProvider second = new TestCursorProvider("{\"id\":2}");
+        List<Object> payload = Arrays.asList(first, second);
+        try (BulkPayloadReader reader = new BulkPayloadReader(payload, null, objectMapper)) {
+            BulkPayloadReader.BulkDocument document = reader.next();
+            assertEquals("{\"id\":1}", new String(((BytesHandle) document.getContent()).get(), StandardCharsets.UTF_8));
+            assertTrue(first.cursor.closed);
+            reader.next();
+            assertTrue(second.cursor.closed);
+        }
+    }
+
+    @Test
+    public void testPayloadCursorIsClosedWithTheReader() throws IOException {
+        TestCursorProvider provider = new TestCursorProvider("[{\"id\":1},{\"id\":2}]");
+        try (BulkPayloadReader reader = new BulkPayloadReader(provider, "/id", objectMapper)) {
+            assertEquals("1", reader.next().getBasename());
+            assertEquals("2", reader.next().getBasename());
+        }
+        assertTrue(provider.cursor.closed);
+    }
+
+    @Test
+    public void testJsonLinesStreamIsReadRecordByRecord() throws IOException {
+        TestCursorProvider provider = new TestCursorProvider("{\"id\":\"a\"}\n{\"id\":\"b\"}\n{\"name\":\"c\"}\n");
+        try (BulkPayloadReader reader = new BulkPayloadReader(provider, "/id", objectMapper)) {
+            assertEquals("a", reader.next().getBasename());
+            assertEquals("b", reader.next().getBasename());
+            BulkPayloadReader.BulkDocument last = reader.next();
+            assertNull(last.getBasename());
+            assertEquals("{\"name\":\"c\"}", new String(last.bufferContent(), StandardCharsets.UTF_8));
+            assertFalse(reader.hasNext());
+        }
+        assertTrue(provider.cursor.closed);
+    }
+
+    @Test
+    public void testStreamingArrayIsIteratedAndClosedWithTheReader() throws IOException {
+        TestCursorIteratorProvider provider = new TestCursorIteratorProvider(Arrays.asList(
+            Collections.singletonMap("id", "a"), "{\"id\":\"b\"}"));
+        try (BulkPayloadReader reader = new BulkPayloadReader(provider, "/id", objectMapper)) {
+            assertEquals("a", reader.next().getBasename());
+            assertEquals("{\"id\":\"b\"}", new String(reader.next().bufferContent(), StandardCharsets.UTF_8));
+            assertFalse(reader.hasNext());
+            assertFalse(provider.closed.get());
+        }
+        assertTrue(provider.closed.get());
+    }
+
+    private static class TestCursorIteratorProvider implements CursorIteratorProvider {
+
+        private final List<?> elements;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        TestCursorIteratorProvider(List<?> elements) {
+            this.elements = elements;
+        }
+
+        /**
+         * @return a cursor over the elements, which records when it is closed
+         */
+        @Override
+        public CursorIterator openCursor() {
+            Iterator<?> iterator = elements.iterator();
+            return (CursorIterator) Proxy.newProxyInstance(CursorIterator.class.getClassLoader(), new Class<?>[]{CursorIterator.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hasNext":
+                            return iterator.hasNext();
+                        case "next":
+                            return iterator.next();
+                        case "close":
+                        case "release":
+                            closed.set(true);
+                            return null;
+                        case "isReleased":
+                            return closed.get();
+                        case "getProvider":
+                            return this;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+
+    private static class TestCursorProvider implements CursorStreamProvider {
+
+        private final byte[] content;
+        private TestCursor cursor;
+
+        TestCursorProvider(String content) {
+            this.content = content.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public CursorStream openCursor() {
+            cursor = new TestCursor(this, content);
+            return cursor;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+
+    private static class TestCursor extends CursorStream {
+
+        private final CursorStreamProvider provider;
+        private final ByteArrayInputStream content;
+        private boolean closed;
+
+        TestCursor(CursorStreamProvider provider, byte[] content) {
+            this.provider = provider;
+            this.content = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public int read() {
+            return content.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            return content.read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public long getPosition() {
+            return 0;
+        }
+
+        @Override
+        public void seek(long position) {
+            content.reset();
+            content.skip(position);
+        }
+
+        @Override
+        public void release() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isReleased() {
+            return closed;
+        }
+
+        @Override
+        public CursorProvider getProvider() {
+            return provider;
+        }
+    }
+}
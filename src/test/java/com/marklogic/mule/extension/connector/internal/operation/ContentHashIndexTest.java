@@ -0,0 +1,89 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ContentHashIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHashesSurviveReopening() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("content-hashes");
+        ContentHashIndex index = new ContentHashIndex(directory, 16);
+        byte[] first = hash("{\"a\":1}");
+        index.put("/first.json", first);
+        index.put("/second.json", hash("{\"b\":2}"));
+        index.put("/first.json", hash("{\"a\":2}"));
+        index.close();
+
+        index = new ContentHashIndex(directory, 16);
+        assertEquals(2, index.size());
+        assertArrayEquals(hash("{\"a\":2}"), index.get("/first.json"));
+        assertArrayEquals(hash("{\"b\":2}"), index.get("/second.json"));
+        assertNull(index.get("/third.json"));
+        index.close();
+    }
+
+    @Test
+    public void testIndexGrows() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("content-hashes");
+        ContentHashIndex index = new ContentHashIndex(directory, 16);
+        for (int i = 0; i < 1000; i++) {
+            index.put("/doc-" + i + ".json", hash(String.valueOf(i)));
+        }
+        assertEquals(1000, index.size());
+        for (int i = 0; i < 1000; i++) {
+            assertArrayEquals(hash(String.valueOf(i)), index.get("/doc-" + i + ".json"));
+        }
+        index.close();
+        assertEquals(1, Files.list(directory).count());
+    }
+
+    @Test
+    public void testUnreadableIndexIsReplaced() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("content-hashes");
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(ContentHashIndex.FILE_NAME), "not an index".getBytes(StandardCharsets.UTF_8));
+        ContentHashIndex index = new ContentHashIndex(directory, 16);
+        assertEquals(0, index.size());
+        assertNull(index.get("/first.json"));
+        index.close();
+    }
+
+    @Test
+    public void testHexRoundTrip() {
+        byte[] hash = hash("{\"a\":1}");
+        assertArrayEquals(hash, ContentHashIndex.fromHex(ContentHashIndex.toHex(hash)));
+        assertNull(ContentHashIndex.fromHex("not a hash"));
+        assertNull(ContentHashIndex.fromHex(null));
+    }
+
+    private static byte[] hash(String content) {
+        return ContentHashIndex.hash(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.io.DocumentMetadataHandle;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentMetadataCacheTest {
+
+    @Test
+    public void testRepeatedMetadataIsInterned() {
+        DocumentMetadataCache.MetadataHandle metadata = DocumentMetadataCache.get("a,b", "rest-reader,read", 1);
+        assertSame(metadata, DocumentMetadataCache.get("a,b", "rest-reader,read", 1));
+        assertNotSame(metadata, DocumentMetadataCache.get("a,c", "rest-reader,read", 1));
+        assertNotSame(metadata, DocumentMetadataCache.get("a,b", "rest-reader,read", 2));
+    }
+
+    @Test
+    public void testMetadataIsParsed() {
+        DocumentMetadataCache.MetadataHandle metadata = DocumentMetadataCache.get("a,b", "rest-reader,read,rest-writer,update", 3);
+        assertTrue(metadata.getCollections().contains("a"));
+        assertTrue(metadata.getCollections().contains("b"));
+        assertEquals(3, metadata.getQuality());
+        assertTrue(metadata.getPermissions().get("rest-reader").contains(DocumentMetadataHandle.Capability.READ));
+        assertTrue(metadata.getPermissions().get("rest-writer").contains(DocumentMetadataHandle.Capability.UPDATE));
+    }
+
+    @Test
+    public void testMetadataValueIsAddedToACopy() {
+        DocumentMetadataCache.MetadataHandle metadata = DocumentMetadataCache.get("a,b", "rest-reader,read,rest-writer,update", 3);
+        DocumentMetadataCache.MetadataHandle copy = metadata.withMetadataValue("contentHash", "00ff");
+        assertNotSame(metadata, copy);
+        assertEquals(metadata.getCollections(), copy.getCollections());
+        assertEquals(metadata.getPermissions(), copy.getPermissions());
+        assertEquals(3, copy.getQuality());
+        assertEquals("00ff", copy.getMetadataValues().get("contentHash"));
+        assertFalse(metadata.getMetadataValues().containsKey("contentHash"));
+    }
+
+    @Test
+    public void testNullCollections() {
+        assertTrue(DocumentMetadataCache.get(null, "rest-reader,read", 1).getCollections().isEmpty());
+    }
+
+    @Test
+    public void testPropertiesRoundTrip() {
+        Map<String, String> properties = new HashMap<>();
+        DocumentMetadataCache.MetadataHandle metadata = DocumentMetadataCache.get("tenant-1", "rest-reader,read", 2);
+        metadata.putProperties(properties);
+        assertSame(metadata, DocumentMetadataCache.get(properties));
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFirstInFirstOut() throws IOException {
+        DocumentSpool spool = new DocumentSpool(folder.getRoot().toPath().resolve("spool"));
+        spool.write(document("/first.json", "{\"a\":1}"));
+        spool.write(document("/second.json", "{\"b\":2}"));
+        assertEquals(2, spool.size());
+
+        DocumentSpool.SpooledDocument first = spool.peek();
+        assertEquals("/first.json", first.getUri());
+        assertEquals("JSON", first.getProperties().get("format"));
+        assertArrayEquals("{\"a\":1}".getBytes(StandardCharsets.UTF_8), first.getContent());
+        spool.remove(first);
+
+        assertEquals("/second.json", spool.peek().getUri());
+        spool.remove(spool.peek());
+        assertTrue(spool.isEmpty());
+        assertNull(spool.peek());
+    }
+
+    @Test
+    public void testDocumentsSurviveRestart() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("restart");
+        DocumentSpool spool = new DocumentSpool(directory);
+        spool.write(document("/first.json", "1"));
+        spool.write(document("/second.json", "2"));
+
+        DocumentSpool reopened = new DocumentSpool(directory);
+        assertEquals(2, reopened.size());
+        assertEquals("/first.json", reopened.peek().getUri());
+
+        reopened.write(document("/third.json", "3"));
+        assertEquals("/third.json", DocumentSpool.read(reopened.list().get(2)).getUri());
+    }
+
+    private DocumentSpool.SpooledDocument document(String uri, String content) {
+        return new DocumentSpool.SpooledDocument(uri, Collections.singletonMap("format", "JSON"),
+            content.getBytes(StandardCharsets.UTF_8));
+    }
+}
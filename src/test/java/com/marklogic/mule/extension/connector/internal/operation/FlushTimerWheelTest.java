@@ -0,0 +1,75 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlushTimerWheelTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTimeoutFiresAfterDelay() throws InterruptedException {
+        // A small wheel, so that the timeout has to wait for several turns
+        FlushTimerWheel wheel = new FlushTimerWheel(executor, 1, 8);
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long start = System.nanoTime();
+        wheel.schedule(() -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, 50);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(firedAt.get() - start) >= 50);
+        wheel.close();
+    }
+
+    @Test
+    public void testCancelledTimeoutDoesNotFire() throws InterruptedException {
+        FlushTimerWheel wheel = new FlushTimerWheel(executor, 1, 8);
+        AtomicBoolean fired = new AtomicBoolean();
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(() -> fired.set(true), 20).cancel();
+        wheel.schedule(later::countDown, 60);
+
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertFalse(fired.get());
+        wheel.close();
+    }
+
+    @Test
+    public void testWithoutExecutorTimeoutsNeverFire() {
+        FlushTimerWheel wheel = new FlushTimerWheel(null);
+        FlushTimerWheel.Timeout timeout = wheel.schedule(() -> { throw new IllegalStateException(); }, 0);
+        assertFalse(timeout.isCancelled());
+        wheel.close();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
+import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.internal.connection.provider.MarkLogicConnectionProvider;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class InsertionBatcherContextTest {
+
+    private final MarkLogicConfiguration configuration = new MarkLogicConfiguration();
+    private final MarkLogicConnection connection = new MarkLogicConnection(new MarkLogicConnectionProvider().withConnectionId("test"));
+
+    @Test
+    public void testEqualContexts() {
+        InsertionBatcherContext context = newContext("temporal");
+        InsertionBatcherContext other = newContext("temporal");
+        assertEquals(context, other);
+        assertEquals(context.hashCode(), other.hashCode());
+        assertEquals(context.computeName(), other.computeName());
+    }
+
+    @Test
+    public void testContextsDifferingInTemporalCollection() {
+        assertNotEquals(newContext("temporal"), newContext("other"));
+    }
+
+    @Test
+    public void testContextsOnDifferentConnections() {
+        InsertionBatcherContext other = newContext("temporal");
+        other.setConnection(new MarkLogicConnection(new MarkLogicConnectionProvider().withConnectionId("test")));
+        assertNotEquals(newContext("temporal"), other);
+    }
+
+    @Test
+    public void testContextsOfDifferentConfigurations() {
+        InsertionBatcherContext other = newContext("temporal");
+        other.setConfiguration(new MarkLogicConfiguration());
+        assertNotEquals(newContext("temporal"), other);
+    }
+
+    @Test
+    public void testHashFollowsSetters() {
+        InsertionBatcherContext context = newContext("temporal");
+        context.hashCode();
+        context.setTemporalCollection("other");
+        assertEquals(newContext("other"), context);
+        assertEquals(newContext("other").hashCode(), context.hashCode());
+    }
+
+    private InsertionBatcherContext newContext(String temporalCollection) {
+        InsertionBatcherContext context = new InsertionBatcherContext();
+        context.setConfiguration(configuration);
+        context.setConnection(connection);
+        context.setJobName("test-job");
+        context.setTemporalCollection(temporalCollection);
+        return context;
+    }
+}
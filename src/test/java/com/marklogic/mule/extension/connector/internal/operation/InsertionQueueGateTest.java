@@ -0,0 +1,80 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InsertionQueueGateTest {
+
+    @Test
+    public void testUnbounded() {
+        InsertionQueueGate gate = new InsertionQueueGate(0, 0);
+        assertFalse(gate.isBounded());
+        assertTrue(gate.tryAcquire(Long.MAX_VALUE / 2));
+        assertTrue(gate.tryAcquire(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void testDocumentLimit() {
+        InsertionQueueGate gate = new InsertionQueueGate(2, 0);
+        assertTrue(gate.tryAcquire(0));
+        assertTrue(gate.tryAcquire(0));
+        assertFalse(gate.tryAcquire(0));
+
+        gate.release(1, 0);
+        assertTrue(gate.tryAcquire(0));
+        assertEquals(2, gate.getQueuedDocuments());
+    }
+
+    @Test
+    public void testByteLimit() {
+        InsertionQueueGate gate = new InsertionQueueGate(0, 100);
+        assertTrue(gate.isByteBounded());
+        assertTrue(gate.tryAcquire(60));
+        assertFalse(gate.tryAcquire(60));
+        assertTrue(gate.tryAcquire(40));
+        assertEquals(100, gate.getQueuedBytes());
+    }
+
+    @Test
+    public void testOversizedDocumentAdmittedWhenEmpty() {
+        InsertionQueueGate gate = new InsertionQueueGate(0, 100);
+        assertTrue(gate.tryAcquire(1000));
+        assertFalse(gate.tryAcquire(1));
+    }
+
+    @Test
+    public void testBlockedCallerResumesOnRelease() throws InterruptedException {
+        InsertionQueueGate gate = new InsertionQueueGate(1, 0);
+        assertTrue(gate.tryAcquire(0));
+
+        Thread releaser = new Thread(() -> gate.release(1, 0));
+        releaser.start();
+        gate.acquire(0);
+        releaser.join();
+        assertEquals(1, gate.getQueuedDocuments());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedGateRejectsWaiters() throws InterruptedException {
+        InsertionQueueGate gate = new InsertionQueueGate(1, 0);
+        assertTrue(gate.tryAcquire(0));
+        gate.close();
+        gate.acquire(0);
+    }
+}
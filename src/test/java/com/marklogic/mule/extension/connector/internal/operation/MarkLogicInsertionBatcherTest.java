@@ -0,0 +1,110 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.mule.extension.connector.api.connection.MarkLogicConnectionType;
+import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
+import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.standin.MarkLogicStandInServer;
+import org.junit.After;
+import org.junit.Test;
+import org.mule.runtime.api.connection.ConnectionException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class MarkLogicInsertionBatcherTest {
+
+    private MarkLogicStandInServer server;
+    private MarkLogicConnection connection;
+    private final InsertionBatcherRegistry registry = new InsertionBatcherRegistry(null);
+
+    @After
+    public void tearDown() {
+        registry.releaseAll(0);
+        connection.invalidate();
+        server.close();
+    }
+
+    @Test
+    public void testDrainWritesQueuedDocuments() throws IOException, ConnectionException {
+        connect(new MarkLogicStandInServer());
+        insert(3);
+        assertEquals(0, registry.releaseAll(0));
+        assertEquals(3, server.getDocumentCount());
+    }
+
+    @Test
+    public void testDrainReportsUnwrittenDocuments() throws IOException, ConnectionException {
+        connect(new MarkLogicStandInServer().withLatencyMillis(500));
+        insert(3);
+        assertEquals(3, registry.releaseAll(50));
+    }
+
+    @Test
+    public void testEvictedBatcherIsDrainedBeforeRelease() throws IOException, ConnectionException {
+        connect(new MarkLogicStandInServer().withLatencyMillis(100));
+        MarkLogicConfiguration configuration = newConfiguration();
+        configuration.setMaxInsertionBatchers(1);
+        insert(configuration, "first-job", 3);
+        // Leasing a batcher for a second job evicts the first, which is flushed in the background
+        insert(configuration, "second-job", 2);
+        assertEquals(1, registry.size());
+        assertEquals(0, registry.releaseAll(0));
+        assertEquals(5, server.getDocumentCount());
+    }
+
+    private void connect(MarkLogicStandInServer standIn) throws IOException, ConnectionException {
+        server = standIn.start();
+        connection = new MarkLogicConnection(server.newConnectionProvider(MarkLogicConnectionType.DIRECT));
+        connection.connect();
+    }
+
+    private void insert(int documentCount) {
+        MarkLogicConfiguration configuration = newConfiguration();
+        insert(configuration, configuration.getJobName(), documentCount);
+    }
+
+    private static MarkLogicConfiguration newConfiguration() {
+        MarkLogicConfiguration configuration = new MarkLogicConfiguration();
+        configuration.setConfigId("drain-test");
+        configuration.setThreadCount(1);
+        configuration.setBatchSize(100);
+        configuration.setSecondsBeforeFlush(60);
+        configuration.setJobName("drain-test");
+        configuration.setServerTransform("null");
+        configuration.setServerTransformParams("null");
+        return configuration;
+    }
+
+    private void insert(MarkLogicConfiguration configuration, String jobName, int documentCount) {
+        InsertionBatcherContext context = new InsertionBatcherContext();
+        context.setConfiguration(configuration);
+        context.setConnection(connection);
+        context.setJobName(jobName);
+        MarkLogicInsertionBatcher batcher = registry.lease(context);
+        DocumentMetadataCache.MetadataHandle metadata = DocumentMetadataCache.get("null", "rest-reader,read,rest-writer,update", 1);
+        try {
+            for (int i = 0; i < documentCount; i++) {
+                batcher.doInsert("/drain/" + jobName + "/" + i + ".json", metadata,
+                    new ByteArrayInputStream(("{\"id\":" + i + "}").getBytes(StandardCharsets.UTF_8)), null);
+            }
+        } finally {
+            batcher.releaseLease();
+        }
+    }
+}
@@ -17,11 +17,14 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marklogic.mule.extension.connector.api.connection.AuthenticationType;
 import com.marklogic.mule.extension.connector.api.connection.MarkLogicConnectionType;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicOutputMode;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicPaginationMode;
 import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueryFormat;
 import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueryStrategy;
 import com.marklogic.mule.extension.connector.internal.config.MarkLogicConfiguration;
 import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
 import com.marklogic.mule.extension.connector.internal.connection.provider.MarkLogicConnectionProvider;
+import com.marklogic.mule.extension.connector.internal.error.exception.MarkLogicConnectorException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -126,7 +129,13 @@ public class MarkLogicOperationTest {
         String serverTransform = "transformTestEgress";
         String serverTransformParams = "text,hello";
         connection.connect();
-        PagingProvider<MarkLogicConnection, Object> export = operation.exportDocs(configuration, queryString, optionsName, MarkLogicQueryStrategy.RawStructuredQueryDefinition, MarkLogicQueryFormat.JSON, resultCount, useConsistentSnapshot, serverTransform, serverTransformParams);
+        PagingProvider<MarkLogicConnection, Object> export = operation.exportDocs(configuration, queryString, optionsName, MarkLogicQueryStrategy.RawStructuredQueryDefinition, MarkLogicQueryFormat.JSON, resultCount, useConsistentSnapshot, serverTransform, serverTransformParams, MarkLogicOutputMode.PARSED, null);
         assertEquals("Optional.empty", export.getTotalResults(connection).toString());
     }
-}
\ No newline at end of file
+
+    @Test(expected = MarkLogicConnectorException.class)
+    public void testQueryCachingIsRejectedOutsideOffsetMode() {
+        operation.queryDocs(configuration, "{\"query\": {}}", null, null, null, MarkLogicQueryStrategy.RawStructuredQueryDefinition,
+            MarkLogicQueryFormat.JSON, null, null, 0, MarkLogicPaginationMode.URI_CURSOR, 0, false, 60, null, MarkLogicOutputMode.PARSED, null);
+    }
+}
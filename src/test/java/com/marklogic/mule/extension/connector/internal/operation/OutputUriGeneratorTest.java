@@ -0,0 +1,69 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicUriStrategy;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OutputUriGeneratorTest {
+
+    @Test
+    public void testBasenameIsKept() {
+        assertEquals("/prefix/doc.json",
+            OutputUriGenerator.generate(MarkLogicUriStrategy.CONTENT_HASH, "/prefix/", ".json", "doc", () -> {
+                throw new AssertionError("Content should not be read when a basename is given");
+            }));
+    }
+
+    @Test
+    public void testCounterIsFixedWidthAndIncreasing() {
+        String first = OutputUriGenerator.nextCounterValue();
+        String second = OutputUriGenerator.nextCounterValue();
+        assertEquals(first.length(), second.length());
+        assertTrue(first.matches("[0-9a-f]{8}-[0-9a-f]{16}"));
+        assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    public void testContentHashIsDeterministic() {
+        byte[] content = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        String uri = OutputUriGenerator.generate(MarkLogicUriStrategy.CONTENT_HASH, "/", ".json", null, () -> content);
+        assertEquals(uri, OutputUriGenerator.generate(MarkLogicUriStrategy.CONTENT_HASH, "/", ".json", null, () -> content.clone()));
+        assertTrue(uri.matches("/[0-9a-f]{64}\\.json"));
+        assertNotEquals(uri, OutputUriGenerator.generate(MarkLogicUriStrategy.CONTENT_HASH, "/", ".json", null,
+            () -> "{\"id\":2}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testTimeOrderedUuid() {
+        UUID uuid = OutputUriGenerator.timeOrderedUuid();
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long millis = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(Math.abs(System.currentTimeMillis() - millis) < 60000);
+    }
+
+    @Test
+    public void testNullStrategyUsesRandomUuid() {
+        String basename = OutputUriGenerator.generateBasename(null, null);
+        assertEquals(4, UUID.fromString(basename).version());
+    }
+}
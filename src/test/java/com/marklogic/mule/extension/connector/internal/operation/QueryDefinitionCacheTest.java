@@ -0,0 +1,95 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.StructuredQueryDefinition;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicQueryStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+public class QueryDefinitionCacheTest {
+
+    private static final String BUILDER_QUERY = "sb.collection(\"mulesoft-test\")";
+
+    private DatabaseClient client;
+    private QueryManager queryManager;
+
+    @Before
+    public void setUp() {
+        // Building query definitions does not contact the server
+        client = DatabaseClientFactory.newClient("localhost", 8000, new DatabaseClientFactory.DigestAuthContext("test", "test"));
+        queryManager = client.newQueryManager();
+    }
+
+    @After
+    public void tearDown() {
+        client.release();
+    }
+
+    @Test
+    public void testRepeatedQueriesAreCompiledOnce() {
+        QueryDefinitionCache cache = new QueryDefinitionCache(() -> 8);
+        QueryDefinition first = cache.newQueryDefinition(queryManager, BUILDER_QUERY, Format.JSON, null, MarkLogicQueryStrategy.StructuredQueryBuilder);
+        QueryDefinition second = cache.newQueryDefinition(queryManager, BUILDER_QUERY, Format.JSON, null, MarkLogicQueryStrategy.StructuredQueryBuilder);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertNotSame(first, second);
+        assertEquals(((StructuredQueryDefinition) first).serialize(), ((StructuredQueryDefinition) second).serialize());
+
+        cache.newQueryDefinition(queryManager, BUILDER_QUERY, Format.JSON, "employeeTest", MarkLogicQueryStrategy.StructuredQueryBuilder);
+        cache.newQueryDefinition(queryManager, BUILDER_QUERY, Format.JSON, null, MarkLogicQueryStrategy.RawStructuredQueryDefinition);
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedQueriesAreEvicted() {
+        AtomicInteger maxSize = new AtomicInteger(2);
+        QueryDefinitionCache cache = new QueryDefinitionCache(maxSize::get);
+        cache.newQueryDefinition(queryManager, "sb.collection(\"a\")", Format.JSON, null, MarkLogicQueryStrategy.StructuredQueryBuilder);
+        cache.newQueryDefinition(queryManager, "sb.collection(\"b\")", Format.JSON, null, MarkLogicQueryStrategy.StructuredQueryBuilder);
+        cache.newQueryDefinition(queryManager, "sb.collection(\"a\")", Format.JSON, null, MarkLogicQueryStrategy.StructuredQueryBuilder);
+        cache.newQueryDefinition(queryManager, "sb.collection(\"c\")", Format.JSON, null, MarkLogicQueryStrategy.StructuredQueryBuilder);
+        assertEquals(2, cache.size());
+
+        cache.newQueryDefinition(queryManager, "sb.collection(\"a\")", Format.JSON, null, MarkLogicQueryStrategy.StructuredQueryBuilder);
+        assertEquals(2, cache.getHits());
+        cache.newQueryDefinition(queryManager, "sb.collection(\"b\")", Format.JSON, null, MarkLogicQueryStrategy.StructuredQueryBuilder);
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testSizeZeroDisablesCaching() {
+        QueryDefinitionCache cache = new QueryDefinitionCache(() -> 0);
+        String query = "{ \"query\": { \"queries\": [] } }";
+        assertNotNull(cache.newQueryDefinition(queryManager, query, Format.JSON, null, MarkLogicQueryStrategy.RawStructuredQueryDefinition));
+        cache.newQueryDefinition(queryManager, query, Format.JSON, null, MarkLogicQueryStrategy.RawStructuredQueryDefinition);
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class WriteAheadJournalTest {
+
+    private static final DocumentMetadataCache.MetadataHandle METADATA =
+        DocumentMetadataCache.get("tenant-1", "rest-reader,read", 2);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMetadataValuesAreRecovered() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        WriteAheadJournal journal = new WriteAheadJournal(directory, 1024);
+        journal.append("/hashed.json", METADATA.withMetadataValue("contentHash", "00ff"), content("{\"a\":1}"));
+        journal.close();
+
+        List<DocumentSpool.SpooledDocument> recovered = new ArrayList<>();
+        new WriteAheadJournal(directory, 1024).recover(recovered::add);
+        DocumentMetadataCache.MetadataHandle metadata = DocumentMetadataCache.get(recovered.get(0).getProperties());
+        assertEquals("00ff", metadata.getMetadataValues().get("contentHash"));
+        assertEquals(2, metadata.getQuality());
+    }
+
+    @Test
+    public void testUnacknowledgedDocumentsAreRecovered() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        WriteAheadJournal journal = new WriteAheadJournal(directory, 1024);
+        BytesHandle first = journal.append("/first.json", METADATA, content("{\"a\":1}"));
+        journal.append("/second.json", METADATA, content("{\"b\":2}"));
+        journal.acknowledge(first);
+        journal.close();
+
+        List<DocumentSpool.SpooledDocument> recovered = new ArrayList<>();
+        WriteAheadJournal reopened = new WriteAheadJournal(directory, 1024);
+        assertEquals(1, reopened.recover(recovered::add));
+        assertEquals("/second.json", recovered.get(0).getUri());
+        assertEquals("JSON", recovered.get(0).getProperties().get(MarkLogicInsertionBatcher.FORMAT));
+        assertEquals("tenant-1", recovered.get(0).getProperties().get(MarkLogicInsertionBatcher.OUTPUT_COLLECTIONS));
+        assertEquals("2", recovered.get(0).getProperties().get(MarkLogicInsertionBatcher.OUTPUT_QUALITY));
+        assertArrayEquals("{\"b\":2}".getBytes(StandardCharsets.UTF_8), recovered.get(0).getContent());
+        assertEquals(0, countSegments(directory));
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsAreDeleted() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("segments");
+        WriteAheadJournal journal = new WriteAheadJournal(directory, 64);
+        List<BytesHandle> handles = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            handles.add(journal.append("/doc" + i + ".json", METADATA, content("{\"value\":" + i + "}")));
+        }
+        assertEquals(10, countSegments(directory));
+
+        handles.forEach(journal::acknowledge);
+        assertEquals(1, countSegments(directory));
+        journal.close();
+        assertEquals(0, countSegments(directory));
+    }
+
+    private BytesHandle content(String json) {
+        return new BytesHandle(json.getBytes(StandardCharsets.UTF_8)).withFormat(Format.JSON);
+    }
+
+    private long countSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
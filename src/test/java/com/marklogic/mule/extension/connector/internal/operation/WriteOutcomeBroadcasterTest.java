@@ -0,0 +1,49 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.operation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteOutcomeBroadcasterTest {
+
+    @Test
+    public void testOutcomesReachEveryListener() {
+        WriteOutcomeBroadcaster broadcaster = new WriteOutcomeBroadcaster();
+        assertFalse(broadcaster.hasListeners());
+
+        List<String> received = new ArrayList<>();
+        broadcaster.addListener((jobId, batchNumber, outcomes) -> {
+            throw new IllegalStateException("listener failure");
+        });
+        WriteOutcomeListener listener = (jobId, batchNumber, outcomes) -> received.add(jobId + ":" + batchNumber + ":" + outcomes.get(0).getUri());
+        broadcaster.addListener(listener);
+        assertTrue(broadcaster.hasListeners());
+
+        DocumentOutcome outcome = new DocumentOutcome("/a.json", DocumentOutcome.Status.WRITTEN, null, 1000);
+        broadcaster.onWriteOutcomes("job-1", 3, Collections.singletonList(outcome));
+        assertEquals(Collections.singletonList("job-1:3:/a.json"), received);
+
+        broadcaster.removeListener(listener);
+        broadcaster.onWriteOutcomes("job-1", 4, Collections.singletonList(outcome));
+        assertEquals(1, received.size());
+    }
+}
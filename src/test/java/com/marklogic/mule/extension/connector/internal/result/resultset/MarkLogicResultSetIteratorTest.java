@@ -0,0 +1,106 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.result.resultset;
+
+import com.marklogic.client.document.DocumentWriteSet;
+import com.marklogic.client.document.GenericDocumentManager;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.mule.extension.connector.api.connection.MarkLogicConnectionType;
+import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.standin.MarkLogicStandInServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.runtime.api.connection.ConnectionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MarkLogicResultSetIteratorTest {
+
+    private MarkLogicStandInServer server;
+    private MarkLogicConnection connection;
+    private QueryDefinition query;
+    private final ExecutorService prefetcher = Executors.newFixedThreadPool(4);
+
+    @Before
+    public void setUp() throws IOException, ConnectionException {
+        server = new MarkLogicStandInServer().start();
+        connection = new MarkLogicConnection(server.newConnectionProvider(MarkLogicConnectionType.GATEWAY));
+        connection.connect();
+
+        GenericDocumentManager documentManager = connection.getClient().newDocumentManager();
+        DocumentWriteSet writeSet = documentManager.newWriteSet();
+        for (int i = 0; i < 25; i++) {
+            writeSet.add(String.format("/prefetch/%02d.json", i), new StringHandle("{\"id\":" + i + "}").withFormat(Format.JSON));
+        }
+        documentManager.write(writeSet);
+        query = connection.getClient().newQueryManager().newStructuredQueryBuilder().and();
+    }
+
+    @After
+    public void tearDown() {
+        prefetcher.shutdownNow();
+        connection.invalidate();
+        server.close();
+    }
+
+    @Test
+    public void testPrefetchingReturnsTheSamePages() {
+        assertEquals(readPages(0, null), readPages(3, null));
+        assertEquals(3, readPages(2, null).size());
+    }
+
+    @Test
+    public void testPrefetchingStopsAtMaxResults() {
+        List<List<Object>> pages = readPages(2, 12L);
+        assertEquals(2, pages.size());
+        assertEquals(10, pages.get(0).size());
+        assertEquals(2, pages.get(1).size());
+    }
+
+    @Test
+    public void testPrefetchingIsBounded() {
+        MarkLogicResultSetIterator iterator = new MarkLogicResultSetIterator(connection, query, 5, null, 3, null, new RecordExtractor(), prefetcher);
+        assertEquals(5, iterator.next().size());
+        iterator.close();
+        // The page returned, plus at most three fetched ahead of it
+        assertTrue(server.getRequestCount("/v1/search") <= 4);
+    }
+
+    private List<List<Object>> readPages(int prefetchPages, Long maxResults) {
+        List<List<Object>> pages = new ArrayList<>();
+        MarkLogicResultSetIterator iterator = new MarkLogicResultSetIterator(connection, query, 10, maxResults, prefetchPages, null,
+            new RecordExtractor(), prefetcher);
+        try {
+            while (iterator.hasNext()) {
+                List<Object> page = iterator.next();
+                if (!page.isEmpty()) {
+                    pages.add(page);
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return pages;
+    }
+}
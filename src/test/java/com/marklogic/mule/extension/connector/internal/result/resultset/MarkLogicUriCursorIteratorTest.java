@@ -0,0 +1,194 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.result.resultset;
+
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.document.DocumentWriteSet;
+import com.marklogic.client.document.GenericDocumentManager;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.query.StructuredQueryDefinition;
+import com.marklogic.mule.extension.connector.api.connection.MarkLogicConnectionType;
+import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.standin.MarkLogicStandInServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.runtime.api.connection.ConnectionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MarkLogicUriCursorIteratorTest {
+
+    private MarkLogicStandInServer server;
+    private MarkLogicConnection connection;
+
+    @Before
+    public void setUp() throws IOException, ConnectionException {
+        server = new MarkLogicStandInServer().withForests(3).start();
+        connection = new MarkLogicConnection(server.newConnectionProvider(MarkLogicConnectionType.GATEWAY));
+        connection.connect();
+
+        GenericDocumentManager documentManager = connection.getClient().newDocumentManager();
+        DocumentWriteSet writeSet = documentManager.newWriteSet();
+        for (int i = 0; i < 25; i++) {
+            writeSet.add(String.format("/cursor/%02d.json", i), new StringHandle("{\"id\":" + i + "}").withFormat(Format.JSON));
+        }
+        documentManager.write(writeSet);
+    }
+
+    @After
+    public void tearDown() {
+        connection.invalidate();
+        server.close();
+    }
+
+    @Test
+    public void testEveryResultIsReturnedOnce() {
+        Set<Object> ids = new HashSet<>();
+        MarkLogicUriCursorIterator iterator = newIterator(null);
+        try {
+            while (iterator.hasNext()) {
+                List<Object> page = iterator.next();
+                assertTrue(page.size() <= 10);
+                for (Object record : page) {
+                    assertTrue(ids.add(((Map<?, ?>) record).get("id")));
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(25, ids.size());
+        assertTrue(iterator.next().isEmpty());
+    }
+
+    @Test
+    public void testResultsStopAtMaxResults() {
+        int count = 0;
+        MarkLogicUriCursorIterator iterator = newIterator(12L);
+        try {
+            while (iterator.hasNext()) {
+                count += iterator.next().size();
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(12, count);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testParallelReadsReturnEveryResult() {
+        assertEquals(25, readIds(newParallelIterator(false)).size());
+    }
+
+    @Test
+    public void testOrderedParallelPagesAreInUriOrder() {
+        MarkLogicUriCursorIterator iterator = newParallelIterator(true);
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                int previous = -1;
+                for (Object record : iterator.next()) {
+                    int id = ((Number) ((Map<?, ?>) record).get("id")).intValue();
+                    assertTrue(id > previous);
+                    previous = id;
+                    count++;
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(25, count);
+    }
+
+    @Test
+    public void testOrderedPagesWaitForBatchesNotYetRead() throws InterruptedException {
+        MarkLogicUriCursorIterator iterator = newParallelIterator(true);
+        List<List<Object>> pages = Collections.synchronizedList(new ArrayList<>());
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                pages.add(iterator.takePage());
+            }
+        });
+        try {
+            reader.start();
+            // Batches 2 and 3 are read before batch 1, which is still queued
+            putPage(iterator, 3);
+            putPage(iterator, 2);
+            Thread.sleep(300);
+            assertTrue(pages.isEmpty());
+
+            putPage(iterator, 1);
+            reader.join(5000);
+            assertEquals(Arrays.asList(page(1), page(2), page(3)), pages);
+
+            // Batch 4 had no documents left to read; it is only skipped once the job is complete
+            putPage(iterator, 5);
+            iterator.completeJob();
+            assertEquals(page(5), iterator.takePage());
+            assertTrue(iterator.takePage().isEmpty());
+        } finally {
+            reader.interrupt();
+            iterator.close();
+        }
+    }
+
+    private static void putPage(MarkLogicUriCursorIterator iterator, long batchNumber) throws InterruptedException {
+        Thread writer = new Thread(() -> iterator.putPage(batchNumber, page(batchNumber)));
+        writer.start();
+        writer.join(5000);
+    }
+
+    private static List<Object> page(long batchNumber) {
+        return Collections.singletonList("batch " + batchNumber);
+    }
+
+    private Set<Object> readIds(MarkLogicUriCursorIterator iterator) {
+        Set<Object> ids = new HashSet<>();
+        try {
+            while (iterator.hasNext()) {
+                for (Object record : iterator.next()) {
+                    assertTrue(ids.add(((Map<?, ?>) record).get("id")));
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return ids;
+    }
+
+    private MarkLogicUriCursorIterator newIterator(Long maxResults) {
+        DataMovementManager dmm = connection.getClient().newDataMovementManager();
+        StructuredQueryDefinition query = connection.getClient().newQueryManager().newStructuredQueryBuilder().and();
+        return new MarkLogicUriCursorIterator(connection, dmm, dmm.newQueryBatcher(query), 10, maxResults, 1, null);
+    }
+
+    private MarkLogicUriCursorIterator newParallelIterator(boolean ordered) {
+        DataMovementManager dmm = connection.getClient().newDataMovementManager();
+        StructuredQueryDefinition query = connection.getClient().newQueryManager().newStructuredQueryBuilder().and();
+        return new MarkLogicUriCursorIterator(connection, dmm, dmm.newQueryBatcher(query), 4, null, 1, 3, ordered, null);
+    }
+}
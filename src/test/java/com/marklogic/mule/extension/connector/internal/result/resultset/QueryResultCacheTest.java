@@ -0,0 +1,167 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.result.resultset;
+
+import com.marklogic.client.document.DocumentWriteSet;
+import com.marklogic.client.document.GenericDocumentManager;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.mule.extension.connector.api.connection.MarkLogicConnectionType;
+import com.marklogic.mule.extension.connector.internal.connection.MarkLogicConnection;
+import com.marklogic.mule.extension.connector.standin.MarkLogicStandInServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.runtime.api.connection.ConnectionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class QueryResultCacheTest {
+
+    private static final long TTL_MILLIS = 60000;
+
+    private MarkLogicStandInServer server;
+    private MarkLogicConnection connection;
+    private QueryDefinition query;
+    private QueryResultCache cache;
+
+    @Before
+    public void setUp() throws IOException, ConnectionException {
+        server = new MarkLogicStandInServer().start();
+        connection = new MarkLogicConnection(server.newConnectionProvider(MarkLogicConnectionType.GATEWAY));
+        connection.connect();
+
+        GenericDocumentManager documentManager = connection.getClient().newDocumentManager();
+        DocumentWriteSet writeSet = documentManager.newWriteSet();
+        for (int i = 0; i < 25; i++) {
+            writeSet.add(String.format("/cache/%02d.json", i), new StringHandle("{\"id\":" + i + "}").withFormat(Format.JSON));
+        }
+        documentManager.write(writeSet);
+        query = connection.getClient().newQueryManager().newStructuredQueryBuilder().and();
+        cache = connection.getQueryResults();
+    }
+
+    @After
+    public void tearDown() {
+        connection.invalidate();
+        server.close();
+    }
+
+    @Test
+    public void testRepeatedQueriesAreReadFromTheCache() {
+        QueryResultCache.CachedQuery cachedQuery = cache.forQuery("all", null, TTL_MILLIS, 100, Long.MAX_VALUE);
+        List<List<Object>> first = readPages(cachedQuery, 0);
+        long searches = server.getRequestCount("/v1/search");
+
+        assertEquals(first, readPages(cachedQuery, 0));
+        assertEquals(first, readPages(cachedQuery, 2));
+        assertEquals(searches, server.getRequestCount("/v1/search"));
+        assertEquals(3, cache.size());
+        assertEquals(6, cache.getHits());
+    }
+
+    @Test
+    public void testExpiredPagesAreReadAgain() {
+        QueryResultCache.CachedQuery cachedQuery = cache.forQuery("all", null, 0, 100, Long.MAX_VALUE);
+        readPages(cachedQuery, 0);
+        long searches = server.getRequestCount("/v1/search");
+
+        readPages(cachedQuery, 0);
+        assertEquals(2 * searches, server.getRequestCount("/v1/search"));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testWritesInvalidateQueriesOfTheirCollections() {
+        QueryResultCache.CachedQuery employees = cache.forQuery("employees", Arrays.asList("employees"), TTL_MILLIS, 100, Long.MAX_VALUE);
+        QueryResultCache.CachedQuery unknown = cache.forQuery("unknown", null, TTL_MILLIS, 100, Long.MAX_VALUE);
+        employees.put(employees.generation(), 1, 10, page("a"));
+        unknown.put(unknown.generation(), 1, 10, page("b"));
+
+        cache.invalidate(Arrays.asList("departments"));
+        assertNotNull(employees.get(1, 10));
+        assertNull(unknown.get(1, 10));
+
+        cache.invalidate(Collections.emptySet());
+        assertNotNull(employees.get(1, 10));
+        cache.invalidate(Arrays.asList("departments", "employees"));
+        assertNull(employees.get(1, 10));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testPagesReadBeforeAnInvalidationAreNotCached() {
+        QueryResultCache.CachedQuery cachedQuery = cache.forQuery("all", null, TTL_MILLIS, 100, Long.MAX_VALUE);
+        long generation = cachedQuery.generation();
+        cache.invalidate(Arrays.asList("employees"));
+        cachedQuery.put(generation, 1, 10, page("a"));
+        assertNull(cachedQuery.get(1, 10));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPagesAreEvicted() {
+        QueryResultCache.CachedQuery cachedQuery = cache.forQuery("all", null, TTL_MILLIS, 2, Long.MAX_VALUE);
+        cachedQuery.put(cachedQuery.generation(), 1, 10, page("a"));
+        cachedQuery.put(cachedQuery.generation(), 11, 10, page("b"));
+        assertNotNull(cachedQuery.get(1, 10));
+        cachedQuery.put(cachedQuery.generation(), 21, 10, page("c"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cachedQuery.get(1, 10));
+        assertNull(cachedQuery.get(11, 10));
+    }
+
+    @Test
+    public void testCacheIsBoundedByBytes() {
+        long pageBytes = 64 + QueryResultCache.estimateBytes("a");
+        QueryResultCache.CachedQuery cachedQuery = cache.forQuery("all", null, TTL_MILLIS, 100, 2 * pageBytes);
+        cachedQuery.put(cachedQuery.generation(), 1, 10, page("a"));
+        cachedQuery.put(cachedQuery.generation(), 11, 10, page("b"));
+        cachedQuery.put(cachedQuery.generation(), 21, 10, page("c"));
+        assertEquals(2, cache.size());
+        assertEquals(2 * pageBytes, cache.getBytes());
+
+        cachedQuery.put(cachedQuery.generation(), 31, 10, page(String.join("", Collections.nCopies(100, "x"))));
+        assertNull(cachedQuery.get(31, 10));
+    }
+
+    private static MarkLogicResultSetIterator.FetchedPage page(String record) {
+        return new MarkLogicResultSetIterator.FetchedPage(Collections.singletonList(record), false, 1);
+    }
+
+    private List<List<Object>> readPages(QueryResultCache.CachedQuery cachedQuery, int prefetchPages) {
+        List<List<Object>> pages = new ArrayList<>();
+        MarkLogicResultSetIterator iterator = new MarkLogicResultSetIterator(connection, query, 10, null, prefetchPages, cachedQuery);
+        try {
+            while (iterator.hasNext()) {
+                List<Object> page = iterator.next();
+                if (!page.isEmpty()) {
+                    pages.add(page);
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.internal.result.resultset;
+
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.io.marker.BufferableHandle;
+import com.marklogic.mule.extension.connector.api.operation.MarkLogicOutputMode;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.mule.runtime.api.metadata.TypedValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecordExtractorTest {
+
+    private static final byte[] CONTENT = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testRawRecordDataTypeMatchesItsValue() {
+        TypedValue<?> record = (TypedValue<?>) new RecordExtractor(MarkLogicOutputMode.RAW).extractRecord(record("application/json"));
+        assertTrue(record.getValue() instanceof byte[]);
+        assertEquals(byte[].class, record.getDataType().getType());
+        assertEquals("application/json", record.getDataType().getMediaType().toRfcString());
+    }
+
+    @Test
+    public void testRawRecordStreamsAreIndependent() throws IOException {
+        Object record = new RecordExtractor(MarkLogicOutputMode.RAW).extractRecord(record("application/json"));
+        TypedValue<InputStream> stream = RecordExtractor.toStream(record);
+        assertEquals(InputStream.class, stream.getDataType().getType());
+        assertEquals("application/json", stream.getDataType().getMediaType().toRfcString());
+        assertArrayEquals(CONTENT, IOUtils.toByteArray(stream.getValue()));
+        assertArrayEquals(CONTENT, IOUtils.toByteArray(RecordExtractor.toStream(record).getValue()));
+    }
+
+    private static DocumentRecord record(String mimetype) {
+        return (DocumentRecord) Proxy.newProxyInstance(RecordExtractorTest.class.getClassLoader(), new Class<?>[]{DocumentRecord.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getUri":
+                        return "/raw/1.json";
+                    case "getMimetype":
+                        return mimetype;
+                    case "getContent":
+                        ((BufferableHandle) args[0]).fromBuffer(CONTENT);
+                        return args[0];
+                    default:
+                        return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,609 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.standin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.marklogic.mule.extension.connector.api.connection.AuthenticationType;
+import com.marklogic.mule.extension.connector.api.connection.MarkLogicConnectionType;
+import com.marklogic.mule.extension.connector.internal.connection.provider.MarkLogicConnectionProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand-in for the subset of the MarkLogic REST API that the connector and DMSDK use, so that write,
+ * query, and export paths can be load- and failure-tested without a MarkLogic cluster:
+ * <ul>
+ *     <li>{@code GET /v1/internal/forestinfo}, listing the configured number of forests on this host</li>
+ *     <li>{@code POST /v1/documents} with a multipart/mixed body, and {@code PUT /v1/documents}, writing documents</li>
+ *     <li>{@code GET /v1/documents}, or a form {@code POST}, reading documents by URI, as multipart/mixed when asked</li>
+ *     <li>{@code DELETE /v1/documents}, deleting documents by URI</li>
+ *     <li>{@code /v1/search}, returning a page of documents or a search response</li>
+ *     <li>{@code /v1/internal/uris}, returning the URIs of a forest a page at a time</li>
+ * </ul>
+ * Documents are kept in memory and assigned to forests by URI. The stand-in does not evaluate queries: every search
+ * and URI query matches every document.
+ * <p>
+ * Latency, a request rate cap, slow forests, and error injection can be configured before the server is started.
+ * Injected errors apply to document, search, and URI requests but not to forest information, so that jobs still start.
+ * Note that the Java client retries 503 responses itself for up to two minutes; use another error status to have
+ * failures surface immediately.
+ */
+public class MarkLogicStandInServer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarkLogicStandInServer.class);
+
+    private static final String DATABASE = "standin-content";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final NavigableMap<String, StoredDocument> documents = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final Map<String, Long> slowForests = new ConcurrentHashMap<>();
+    private final AtomicLong serverTimestamp = new AtomicLong(System.currentTimeMillis() * 10000);
+
+    private String hostname = "localhost";
+    private int port;
+    private int forestCount = 3;
+    private long latencyMillis;
+    private long requestIntervalNanos;
+    private long nextRequestNanos;
+    private double errorRate;
+    private int errorStatus = 503;
+    private double resetRate;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param hostname the host name forests are reported on; DMSDK connects to it directly for DIRECT connections
+     */
+    public MarkLogicStandInServer withHostname(String hostname) {
+        this.hostname = hostname;
+        return this;
+    }
+
+    /**
+     * @param port the port to listen on; 0, the default, picks a free port
+     */
+    public MarkLogicStandInServer withPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public MarkLogicStandInServer withForests(int forestCount) {
+        this.forestCount = Math.max(1, forestCount);
+        return this;
+    }
+
+    /**
+     * @param latencyMillis added to every response
+     */
+    public MarkLogicStandInServer withLatencyMillis(long latencyMillis) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+        return this;
+    }
+
+    /**
+     * @param maxRequestsPerSecond caps the rate at which requests are answered; requests over the cap wait their turn
+     */
+    public MarkLogicStandInServer withMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.requestIntervalNanos = maxRequestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond) : 0;
+        return this;
+    }
+
+    /**
+     * @param errorRate the fraction of requests, between 0 and 1, answered with the error status
+     */
+    public MarkLogicStandInServer withErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param errorStatus the status of injected errors; 503 by default
+     */
+    public MarkLogicStandInServer withErrorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    /**
+     * @param resetRate the fraction of requests, between 0 and 1, whose connection is closed without a response
+     */
+    public MarkLogicStandInServer withResetRate(double resetRate) {
+        this.resetRate = resetRate;
+        return this;
+    }
+
+    /**
+     * Slows down requests that touch a forest: writes of documents assigned to it, and URI queries against it.
+     *
+     * @param forestIndex the forest, from 0 to the number of forests minus 1
+     * @param extraLatencyMillis added to those requests
+     */
+    public MarkLogicStandInServer withSlowForest(int forestIndex, long extraLatencyMillis) {
+        slowForests.put(forestName(forestIndex), extraLatencyMillis);
+        return this;
+    }
+
+    public MarkLogicStandInServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "marklogic-standin");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        LOGGER.info("MarkLogic stand-in listening on port {} with {} forests", getPort(), forestCount);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return a connection provider for this server, with the given connection type
+     */
+    public MarkLogicConnectionProvider newConnectionProvider(MarkLogicConnectionType connectionType) {
+        return new MarkLogicConnectionProvider()
+            .withHostname(hostname)
+            .withPort(getPort())
+            .withUsername("standin")
+            .withPassword("standin")
+            .withAuthenticationType(AuthenticationType.digest)
+            .withMarklogicConnectionType(connectionType)
+            .withConnectionId("standin-" + getPort());
+    }
+
+    public int getDocumentCount() {
+        return documents.size();
+    }
+
+    /**
+     * @return the content of a document, or null if there is no document with the URI
+     */
+    public byte[] getDocument(String uri) {
+        StoredDocument document = documents.get(uri);
+        return document != null ? document.content : null;
+    }
+
+    /**
+     * @param path a REST path such as {@code /v1/documents}
+     * @return how many requests have been made to the path, including those that an injected error answered
+     */
+    public long getRequestCount(String path) {
+        AtomicLong count = requestCounts.get(path);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Deletes every document and resets the request counts.
+     */
+    public void clear() {
+        documents.clear();
+        requestCounts.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requestCounts.computeIfAbsent(path, key -> new AtomicLong()).incrementAndGet();
+        try {
+            byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+            Map<String, List<String>> params = parseParams(exchange.getRequestURI().getRawQuery());
+            if (isForm(exchange)) {
+                parseParams(new String(body, StandardCharsets.UTF_8)).forEach(
+                    (name, values) -> params.computeIfAbsent(name, key -> new ArrayList<>()).addAll(values));
+            }
+
+            throttle();
+            pause(latencyMillis);
+            if (!"/v1/internal/forestinfo".equals(path)) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                if (resetRate > 0 && random.nextDouble() < resetRate) {
+                    // Closing the exchange before responding drops the connection
+                    exchange.close();
+                    return;
+                }
+                if (errorRate > 0 && random.nextDouble() < errorRate) {
+                    sendError(exchange, errorStatus, "STANDIN-INJECTED", "Injected error");
+                    return;
+                }
+            }
+
+            switch (path) {
+                case "/v1/internal/forestinfo":
+                    sendJson(exchange, forestInfo());
+                    break;
+                case "/v1/internal/uris":
+                    handleUris(exchange, params);
+                    break;
+                case "/v1/documents":
+                    handleDocuments(exchange, params, body);
+                    break;
+                case "/v1/search":
+                    handleSearch(exchange, params);
+                    break;
+                default:
+                    sendError(exchange, 404, "REST-UNSUPPORTEDOPERATION", "The stand-in does not support " + path);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (RuntimeException ex) {
+            LOGGER.error("Unable to handle {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), ex);
+            sendError(exchange, 500, "STANDIN-INTERNAL", String.valueOf(ex.getMessage()));
+        }
+    }
+
+    private ArrayNode forestInfo() {
+        ArrayNode forests = objectMapper.createArrayNode();
+        for (int i = 0; i < forestCount; i++) {
+            forests.addObject()
+                .put("id", String.valueOf(1000 + i))
+                .put("name", forestName(i))
+                .put("database", DATABASE)
+                .put("host", hostname)
+                .put("updatesAllowed", "all");
+        }
+        return forests;
+    }
+
+    private void handleUris(HttpExchange exchange, Map<String, List<String>> params) throws IOException, InterruptedException {
+        String forestName = first(params, "forest-name");
+        if (forestName != null) {
+            pause(slowForests.getOrDefault(forestName, 0L));
+        }
+        String after = first(params, "after");
+        long start = parseLong(first(params, "start"), 1);
+        long pageLength = parseLong(first(params, "pageLength"), 1000);
+
+        StringBuilder uris = new StringBuilder();
+        long position = 0;
+        long returned = 0;
+        NavigableMap<String, StoredDocument> candidates = after != null ? documents.tailMap(after, false) : documents;
+        for (String uri : candidates.keySet()) {
+            if (forestName != null && !forestName.equals(forestName(forestOf(uri)))) {
+                continue;
+            }
+            position++;
+            if (after == null && position < start) {
+                continue;
+            }
+            if (returned++ == pageLength) {
+                break;
+            }
+            uris.append(uri).append('\n');
+        }
+        send(exchange, 200, "text/uri-list", uris.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleDocuments(HttpExchange exchange, Map<String, List<String>> params, byte[] body)
+        throws IOException, InterruptedException {
+        String method = exchange.getRequestMethod().toUpperCase(Locale.ROOT);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String boundary = MultipartBody.boundaryOf(contentType);
+        if ("POST".equals(method) && boundary != null) {
+            writeDocuments(exchange, MultipartBody.parse(body, boundary));
+        } else if ("PUT".equals(method)) {
+            String uri = first(params, "uri");
+            pause(slowForests.getOrDefault(forestName(forestOf(uri)), 0L));
+            documents.put(uri, new StoredDocument(body, contentType));
+            serverTimestamp.incrementAndGet();
+            send(exchange, 201, null, new byte[0]);
+        } else if ("DELETE".equals(method)) {
+            List<String> uris = params.getOrDefault("uri", Collections.emptyList());
+            uris.forEach(documents::remove);
+            serverTimestamp.incrementAndGet();
+            send(exchange, 204, null, null);
+        } else {
+            List<String> uris = params.getOrDefault("uri", Collections.emptyList());
+            if (uris.size() == 1 && !acceptsMultipart(exchange)) {
+                StoredDocument document = documents.get(uris.get(0));
+                if (document == null) {
+                    sendError(exchange, 404, "RESTAPI-NODOCUMENT", "Resource or document does not exist: " + uris.get(0));
+                } else {
+                    exchange.getResponseHeaders().add("vnd.marklogic.document-format", document.format);
+                    send(exchange, 200, document.mimetype, document.content);
+                }
+                return;
+            }
+            MultipartBody multipart = new MultipartBody();
+            boolean withMetadata = params.getOrDefault("category", Collections.emptyList()).stream()
+                .anyMatch(category -> !"content".equals(category));
+            for (String uri : uris) {
+                StoredDocument document = documents.get(uri);
+                if (document != null) {
+                    addDocumentParts(multipart, uri, document, withMetadata);
+                }
+            }
+            send(exchange, 200, multipart.getContentType(), multipart.toByteArray());
+        }
+    }
+
+    private void writeDocuments(HttpExchange exchange, List<MultipartBody.Part> parts) throws IOException, InterruptedException {
+        Map<String, StoredDocument> written = new LinkedHashMap<>();
+        for (MultipartBody.Part part : parts) {
+            Map<String, String> disposition = part.getDisposition();
+            String uri = disposition.get("filename");
+            if (uri != null && !"metadata".equals(disposition.get("category"))) {
+                written.put(uri, new StoredDocument(part.getContent(), part.getHeader("Content-Type")));
+            }
+        }
+
+        long slowest = 0;
+        for (String uri : written.keySet()) {
+            slowest = Math.max(slowest, slowForests.getOrDefault(forestName(forestOf(uri)), 0L));
+        }
+        pause(slowest);
+        documents.putAll(written);
+        serverTimestamp.incrementAndGet();
+
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode descriptors = response.putArray("documents");
+        written.forEach((uri, document) -> {
+            ObjectNode descriptor = descriptors.addObject();
+            descriptor.put("uri", uri);
+            descriptor.put("mime-type", document.mimetype);
+            descriptor.putArray("category").add("metadata").add("content");
+        });
+        sendJson(exchange, response);
+    }
+
+    private void handleSearch(HttpExchange exchange, Map<String, List<String>> params) throws IOException {
+        long start = Math.max(1, parseLong(first(params, "start"), 1));
+        long pageLength = parseLong(first(params, "pageLength"), 10);
+        List<Map.Entry<String, StoredDocument>> page = new ArrayList<>();
+        long position = 0;
+        for (Map.Entry<String, StoredDocument> entry : documents.entrySet()) {
+            if (++position >= start && page.size() < pageLength) {
+                page.add(entry);
+            }
+        }
+        int total = documents.size();
+
+        exchange.getResponseHeaders().add("vnd.marklogic.start", String.valueOf(start));
+        exchange.getResponseHeaders().add("vnd.marklogic.pageLength", String.valueOf(pageLength));
+        exchange.getResponseHeaders().add("vnd.marklogic.result-estimate", String.valueOf(total));
+        if (acceptsMultipart(exchange)) {
+            MultipartBody multipart = new MultipartBody();
+            String view = first(params, "view");
+            if (view != null && !"none".equals(view)) {
+                Map<String, String> headers = new LinkedHashMap<>();
+                headers.put("Content-Type", "application/json");
+                headers.put("Content-Disposition", "inline; category=metadata; format=json");
+                multipart.addPart(headers, objectMapper.writeValueAsBytes(searchResponse(page, start, pageLength, total)));
+            }
+            for (Map.Entry<String, StoredDocument> entry : page) {
+                addDocumentParts(multipart, entry.getKey(), entry.getValue(), false);
+            }
+            send(exchange, 200, multipart.getContentType(), multipart.toByteArray());
+        } else if ("json".equals(first(params, "format")) || accepts(exchange, "json")) {
+            sendJson(exchange, searchResponse(page, start, pageLength, total));
+        } else {
+            StringBuilder xml = new StringBuilder()
+                .append("<search:response xmlns:search=\"http://marklogic.com/appservices/search\" snippet-format=\"empty-snippet\"")
+                .append(" total=\"").append(total).append("\" start=\"").append(start)
+                .append("\" page-length=\"").append(pageLength).append("\">");
+            long index = start;
+            for (Map.Entry<String, StoredDocument> entry : page) {
+                xml.append("<search:result index=\"").append(index++).append("\" uri=\"").append(escapeXml(entry.getKey()))
+                    .append("\" path=\"fn:doc(&quot;").append(escapeXml(entry.getKey())).append("&quot;)\" score=\"0\"")
+                    .append(" confidence=\"0\" fitness=\"0\" format=\"").append(entry.getValue().format).append("\"/>");
+            }
+            xml.append("</search:response>");
+            send(exchange, 200, "application/xml", xml.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private ObjectNode searchResponse(List<Map.Entry<String, StoredDocument>> page, long start, long pageLength, int total) {
+        ObjectNode response = objectMapper.createObjectNode()
+            .put("snippet-format", "empty-snippet")
+            .put("total", total)
+            .put("start", start)
+            .put("page-length", pageLength);
+        ArrayNode results = response.putArray("results");
+        long index = start;
+        for (Map.Entry<String, StoredDocument> entry : page) {
+            results.addObject()
+                .put("index", index++)
+                .put("uri", entry.getKey())
+                .put("format", entry.getValue().format)
+                .put("mimetype", entry.getValue().mimetype);
+        }
+        return response;
+    }
+
+    private void addDocumentParts(MultipartBody multipart, String uri, StoredDocument document, boolean withMetadata) {
+        if (withMetadata) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            headers.put("Content-Type", "application/xml");
+            headers.put("Content-Disposition", "attachment; filename=\"" + uri + "\"; category=metadata; format=xml");
+            multipart.addPart(headers,
+                "<rapi:metadata xmlns:rapi=\"http://marklogic.com/rest-api\"/>".getBytes(StandardCharsets.UTF_8));
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", document.mimetype);
+        headers.put("Content-Disposition", "attachment; filename=\"" + uri + "\"; category=content; format=" + document.format);
+        multipart.addPart(headers, document.content);
+    }
+
+    private synchronized long reserveRequestSlot() {
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextRequestNanos);
+        nextRequestNanos = slot + requestIntervalNanos;
+        return slot - now;
+    }
+
+    private void throttle() throws InterruptedException {
+        if (requestIntervalNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(reserveRequestSlot());
+        }
+    }
+
+    private static void pause(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private int forestOf(String uri) {
+        return Math.floorMod(String.valueOf(uri).hashCode(), forestCount);
+    }
+
+    private static String forestName(int forestIndex) {
+        return "standin-forest-" + (forestIndex + 1);
+    }
+
+    private void sendJson(HttpExchange exchange, Object json) throws IOException {
+        send(exchange, 200, "application/json", objectMapper.writeValueAsBytes(json));
+    }
+
+    private void sendError(HttpExchange exchange, int status, String messageCode, String message) throws IOException {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.putObject("errorResponse")
+            .put("statusCode", status)
+            .put("status", status == 404 ? "Not Found" : status == 503 ? "Service Unavailable" : "Error")
+            .put("messageCode", messageCode)
+            .put("message", message);
+        send(exchange, status, "application/json", objectMapper.writeValueAsBytes(error));
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+        }
+        exchange.getResponseHeaders().add("ML-Effective-Timestamp", String.valueOf(serverTimestamp.get()));
+        exchange.sendResponseHeaders(status, body == null || body.length == 0 ? -1 : body.length);
+        if (body != null && body.length > 0) {
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private static boolean isForm(HttpExchange exchange) {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        return contentType != null && contentType.startsWith("application/x-www-form-urlencoded");
+    }
+
+    private static boolean acceptsMultipart(HttpExchange exchange) {
+        return accepts(exchange, "multipart/mixed");
+    }
+
+    private static boolean accepts(HttpExchange exchange, String type) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return accept != null && accept.contains(type);
+    }
+
+    private static Map<String, List<String>> parseParams(String query) {
+        Map<String, List<String>> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+            String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+            params.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String first(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return value != null ? Long.parseLong(value) : defaultValue;
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    private static String escapeXml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;");
+    }
+
+    private static final class StoredDocument {
+
+        private final byte[] content;
+        private final String mimetype;
+        private final String format;
+
+        StoredDocument(byte[] content, String mimetype) {
+            this.content = content;
+            this.mimetype = mimetype != null ? mimetype.split(";")[0].trim() : "application/octet-stream";
+            this.format = formatOf(this.mimetype);
+        }
+
+        private static String formatOf(String mimetype) {
+            if (mimetype.contains("json")) {
+                return "json";
+            }
+            if (mimetype.contains("xml")) {
+                return "xml";
+            }
+            return mimetype.startsWith("text/") ? "text" : "binary";
+        }
+    }
+}
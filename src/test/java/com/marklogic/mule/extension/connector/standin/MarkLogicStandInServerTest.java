@@ -0,0 +1,133 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.standin;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MarkLogicStandInServerTest {
+
+    private MarkLogicStandInServer server;
+    private DatabaseClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MarkLogicStandInServer().withForests(3).start();
+        client = DatabaseClientFactory.newClient("localhost", server.getPort(),
+            new DatabaseClientFactory.DigestAuthContext("standin", "standin"), DatabaseClient.ConnectionType.GATEWAY);
+    }
+
+    @After
+    public void tearDown() {
+        client.release();
+        server.close();
+    }
+
+    @Test
+    public void testWriteBatcherWritesEveryDocument() {
+        writeDocuments(25);
+        assertEquals(25, server.getDocumentCount());
+        assertEquals("{\"id\":7}", new String(server.getDocument("/standin/7.json"), StandardCharsets.UTF_8));
+        assertTrue(server.getRequestCount("/v1/internal/forestinfo") > 0);
+    }
+
+    @Test
+    public void testQueryBatcherListsEveryUri() {
+        writeDocuments(25);
+        DataMovementManager dmm = client.newDataMovementManager();
+        Set<String> uris = Collections.synchronizedSet(new HashSet<>());
+        QueryBatcher batcher = dmm.newQueryBatcher(client.newQueryManager().newRawStructuredQueryDefinition(
+                new StringHandle("{\"query\":{\"queries\":[]}}").withFormat(Format.JSON)))
+            .withBatchSize(4)
+            .onUrisReady(batch -> Collections.addAll(uris, batch.getItems()));
+        dmm.startJob(batcher);
+        batcher.awaitCompletion();
+        dmm.stopJob(batcher);
+        assertEquals(25, uris.size());
+    }
+
+    @Test
+    public void testDeleteRemovesDocuments() {
+        writeDocuments(3);
+        client.newDocumentManager().delete("/standin/0.json", "/standin/1.json");
+        assertEquals(1, server.getDocumentCount());
+        assertNull(server.getDocument("/standin/0.json"));
+    }
+
+    @Test
+    public void testInjectedErrorsFailBatches() {
+        server.withErrorRate(1).withErrorStatus(500);
+        AtomicInteger failedBatches = new AtomicInteger();
+        DataMovementManager dmm = client.newDataMovementManager();
+        WriteBatcher batcher = dmm.newWriteBatcher()
+            .withBatchSize(5)
+            .onBatchFailure((batch, throwable) -> failedBatches.incrementAndGet());
+        dmm.startJob(batcher);
+        for (int i = 0; i < 10; i++) {
+            batcher.add("/standin/" + i + ".json", new StringHandle("{}").withFormat(Format.JSON));
+        }
+        batcher.flushAndWait();
+        dmm.stopJob(batcher);
+        assertEquals(2, failedBatches.get());
+        assertEquals(0, server.getDocumentCount());
+    }
+
+    @Test
+    public void testResetDropsTheConnection() throws IOException {
+        server.withResetRate(1);
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+            "http://localhost:" + server.getPort() + "/v1/documents?uri=/standin/0.json").openConnection();
+        try (InputStream ignored = connection.getInputStream()) {
+            fail("Expected the connection to be dropped");
+        } catch (IOException ex) {
+            assertEquals(1, server.getRequestCount("/v1/documents"));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void writeDocuments(int count) {
+        DataMovementManager dmm = client.newDataMovementManager();
+        WriteBatcher batcher = dmm.newWriteBatcher().withBatchSize(10).withThreadCount(2);
+        dmm.startJob(batcher);
+        for (int i = 0; i < count; i++) {
+            batcher.add("/standin/" + i + ".json", new StringHandle("{\"id\":" + i + "}").withFormat(Format.JSON));
+        }
+        batcher.flushAndWait();
+        dmm.stopJob(batcher);
+    }
+}
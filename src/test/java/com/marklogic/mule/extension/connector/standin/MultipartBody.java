@@ -0,0 +1,191 @@
+/**
+ * MarkLogic Mule Connector
+ *
+ * Copyright © 2023 MarkLogic Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ * This project and its code and functionality is not representative of MarkLogic Server and is not supported by MarkLogic.
+ */
+package com.marklogic.mule.extension.connector.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads and writes the multipart/mixed bodies the REST API uses for bulk document writes and reads.
+ */
+final class MultipartBody {
+
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final String boundary;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    MultipartBody() {
+        this.boundary = "STANDIN-" + UUID.randomUUID();
+    }
+
+    String getContentType() {
+        return "multipart/mixed; boundary=" + boundary;
+    }
+
+    MultipartBody addPart(Map<String, String> headers, byte[] content) {
+        write("--" + boundary + "\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            write(header.getKey() + ": " + header.getValue() + "\r\n");
+        }
+        write("Content-Length: " + content.length + "\r\n\r\n");
+        body.write(content, 0, content.length);
+        write("\r\n");
+        return this;
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream closed = new ByteArrayOutputStream();
+        byte[] parts = body.toByteArray();
+        closed.write(parts, 0, parts.length);
+        byte[] end = ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        closed.write(end, 0, end.length);
+        return closed.toByteArray();
+    }
+
+    private void write(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        body.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the boundary declared by a multipart content type, or null if it is not one
+     */
+    static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return null;
+        }
+        return parameters(contentType).get("boundary");
+    }
+
+    static List<Part> parse(byte[] body, String boundary) {
+        byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        List<Part> parts = new ArrayList<>();
+        int position = indexOf(body, delimiter, 0);
+        while (position >= 0) {
+            int partStart = position + delimiter.length;
+            if (partStart + 1 < body.length && body[partStart] == '-' && body[partStart + 1] == '-') {
+                break;
+            }
+            partStart = skipLineBreak(body, partStart);
+            int next = indexOf(body, delimiter, partStart);
+            if (next < 0) {
+                break;
+            }
+            int partEnd = next;
+            if (partEnd >= 2 && body[partEnd - 2] == '\r' && body[partEnd - 1] == '\n') {
+                partEnd -= 2;
+            }
+            parts.add(parsePart(Arrays.copyOfRange(body, partStart, partEnd)));
+            position = next;
+        }
+        return parts;
+    }
+
+    private static Part parsePart(byte[] part) {
+        int headerEnd = indexOf(part, HEADER_END, 0);
+        Map<String, String> headers = new LinkedHashMap<>();
+        byte[] content;
+        if (headerEnd < 0) {
+            content = part;
+        } else {
+            String headerText = new String(part, 0, headerEnd, StandardCharsets.UTF_8);
+            for (String line : headerText.split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+                }
+            }
+            content = Arrays.copyOfRange(part, headerEnd + HEADER_END.length, part.length);
+        }
+        return new Part(headers, content);
+    }
+
+    /**
+     * Parses the parameters of a header value such as {@code attachment; filename="/a.json"; category=content}.
+     */
+    static Map<String, String> parameters(String headerValue) {
+        if (headerValue == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (String token : headerValue.split(";")) {
+            int equals = token.indexOf('=');
+            if (equals > 0) {
+                String value = token.substring(equals + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                parameters.put(token.substring(0, equals).trim().toLowerCase(Locale.ROOT), value);
+            }
+        }
+        return parameters;
+    }
+
+    private static int skipLineBreak(byte[] body, int position) {
+        int skipped = position;
+        while (skipped < body.length && (body[skipped] == ' ' || body[skipped] == '\t')) {
+            skipped++;
+        }
+        if (indexOf(body, CRLF, skipped) == skipped) {
+            return skipped + CRLF.length;
+        }
+        return skipped < body.length && body[skipped] == '\n' ? skipped + 1 : position;
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle, int from) {
+        outer:
+        for (int i = Math.max(0, from); i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    static final class Part {
+
+        private final Map<String, String> headers;
+        private final byte[] content;
+
+        Part(Map<String, String> headers, byte[] content) {
+            this.headers = headers;
+            this.content = content;
+        }
+
+        String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        Map<String, String> getDisposition() {
+            return parameters(getHeader("Content-Disposition"));
+        }
+
+        byte[] getContent() {
+            return content;
+        }
+    }
+}